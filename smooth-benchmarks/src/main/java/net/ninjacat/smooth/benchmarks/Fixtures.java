@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.benchmarks;
+
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Function2;
+import net.ninjacat.smooth.functions.Predicate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Shared functions and data generators used by benchmarks. Functions are kept as constants so that every benchmark
+ * measures the same call shapes.
+ */
+final class Fixtures {
+
+    static final Func<Integer, Integer> TIMES_THREE = new Func<Integer, Integer>() {
+        @Override
+        public Integer apply(final Integer value) {
+            return value * 3;
+        }
+    };
+
+    static final Func<Integer, Integer> PLUS_ONE = new Func<Integer, Integer>() {
+        @Override
+        public Integer apply(final Integer value) {
+            return value + 1;
+        }
+    };
+
+    static final Predicate<Integer> IS_EVEN = new Predicate<Integer>() {
+        @Override
+        public boolean matches(final Integer value) {
+            return 0 == (value & 1);
+        }
+    };
+
+    static final Predicate<Integer> NOT_DIVISIBLE_BY_FIVE = new Predicate<Integer>() {
+        @Override
+        public boolean matches(final Integer value) {
+            return 0 != value % 5;
+        }
+    };
+
+    static final Function2<Long, Long, Integer> SUM = new Function2<Long, Long, Integer>() {
+        @Override
+        public Long apply(final Long acc, final Integer value) {
+            return acc + value;
+        }
+    };
+
+    private Fixtures() {
+    }
+
+    static List<Integer> randomInts(final int size, final long seed) {
+        final Random random = new Random(seed);
+        final List<Integer> result = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(random.nextInt(1000000));
+        }
+        return result;
+    }
+}
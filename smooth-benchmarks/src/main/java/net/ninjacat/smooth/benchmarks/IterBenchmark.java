@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.benchmarks;
+
+import net.ninjacat.smooth.iterators.Iter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static net.ninjacat.smooth.benchmarks.Fixtures.*;
+
+/**
+ * Compares {@link Iter} operations and chains against hand-written loops and {@code java.util.stream}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IterBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<Integer> data;
+
+    @Setup
+    public void setUp() {
+        this.data = randomInts(this.size, 42L);
+    }
+
+    @Benchmark
+    public List<Integer> mapIter() {
+        return Iter.of(this.data).map(TIMES_THREE).toList();
+    }
+
+    @Benchmark
+    public List<Integer> mapLoop() {
+        final List<Integer> result = new ArrayList<Integer>();
+        for (final Integer value : this.data) {
+            result.add(TIMES_THREE.apply(value));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Integer> mapStream() {
+        return this.data.stream().map(TIMES_THREE::apply).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Integer> filterIter() {
+        return Iter.of(this.data).filter(IS_EVEN).toList();
+    }
+
+    @Benchmark
+    public List<Integer> filterLoop() {
+        final List<Integer> result = new ArrayList<Integer>();
+        for (final Integer value : this.data) {
+            if (IS_EVEN.matches(value)) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Integer> filterStream() {
+        return this.data.stream().filter(IS_EVEN::matches).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public long reduceIter() {
+        return Iter.of(this.data).reduce(0L, SUM);
+    }
+
+    @Benchmark
+    public long reduceLoop() {
+        long result = 0L;
+        for (final Integer value : this.data) {
+            result = SUM.apply(result, value);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long reduceStream() {
+        return this.data.stream().reduce(0L, SUM::apply, Long::sum);
+    }
+
+    @Benchmark
+    public List<Integer> toListIter() {
+        return Iter.of(this.data).toList();
+    }
+
+    @Benchmark
+    public List<Integer> toListLoop() {
+        final List<Integer> result = new ArrayList<Integer>();
+        for (final Integer value : this.data) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Integer> toListStream() {
+        return this.data.stream().collect(Collectors.toList());
+    }
+
+    /**
+     * Five stage chain, the shape that suffers most from nested iterator wrapping.
+     */
+    @Benchmark
+    public long chainIter() {
+        return Iter.of(this.data)
+                .map(TIMES_THREE)
+                .filter(IS_EVEN)
+                .map(PLUS_ONE)
+                .filter(NOT_DIVISIBLE_BY_FIVE)
+                .map(TIMES_THREE)
+                .reduce(0L, SUM);
+    }
+
+    @Benchmark
+    public long chainLoop() {
+        long result = 0L;
+        for (final Integer value : this.data) {
+            final Integer tripled = TIMES_THREE.apply(value);
+            if (!IS_EVEN.matches(tripled)) {
+                continue;
+            }
+            final Integer incremented = PLUS_ONE.apply(tripled);
+            if (!NOT_DIVISIBLE_BY_FIVE.matches(incremented)) {
+                continue;
+            }
+            result = SUM.apply(result, TIMES_THREE.apply(incremented));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long chainStream() {
+        return this.data.stream()
+                .map(TIMES_THREE::apply)
+                .filter(IS_EVEN::matches)
+                .map(PLUS_ONE::apply)
+                .filter(NOT_DIVISIBLE_BY_FIVE::matches)
+                .map(TIMES_THREE::apply)
+                .reduce(0L, SUM::apply, Long::sum);
+    }
+}
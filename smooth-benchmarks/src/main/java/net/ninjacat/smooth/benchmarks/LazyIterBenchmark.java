@@ -0,0 +1,75 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.benchmarks;
+
+import net.ninjacat.smooth.iterators.LazyIter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static net.ninjacat.smooth.benchmarks.Fixtures.*;
+
+/**
+ * Measures {@link LazyIter} chains, including the cost of creating and evaluating the promises.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LazyIterBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    private List<Integer> data;
+
+    @Setup
+    public void setUp() {
+        this.data = randomInts(this.size, 42L);
+    }
+
+    @Benchmark
+    public long chainReduce() {
+        return LazyIter.of(this.data)
+                .map(TIMES_THREE)
+                .filter(IS_EVEN)
+                .map(PLUS_ONE)
+                .reduce(0L, SUM)
+                .get();
+    }
+
+    @Benchmark
+    public List<Integer> chainToList() {
+        return LazyIter.of(this.data)
+                .map(TIMES_THREE)
+                .filter(IS_EVEN)
+                .map(PLUS_ONE)
+                .toList();
+    }
+
+    @Benchmark
+    public boolean chainAny() {
+        return LazyIter.of(this.data)
+                .map(TIMES_THREE)
+                .filter(IS_EVEN)
+                .any(NOT_DIVISIBLE_BY_FIVE)
+                .get();
+    }
+}
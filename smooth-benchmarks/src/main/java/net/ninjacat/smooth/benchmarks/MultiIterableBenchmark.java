@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.benchmarks;
+
+import net.ninjacat.smooth.iterators.Iter;
+import net.ninjacat.smooth.iterators.MultiIterable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static net.ninjacat.smooth.benchmarks.Fixtures.SUM;
+import static net.ninjacat.smooth.benchmarks.Fixtures.randomInts;
+
+/**
+ * Measures walking several collections through {@link MultiIterable} compared to nested loops
+ * and {@link Stream#flatMap}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MultiIterableBenchmark {
+
+    @Param({"1000", "100000"})
+    public int size;
+
+    @Param({"4", "64"})
+    public int parts;
+
+    private List<List<Integer>> data;
+
+    @Setup
+    public void setUp() {
+        this.data = new ArrayList<List<Integer>>(this.parts);
+        for (int i = 0; i < this.parts; i++) {
+            this.data.add(randomInts(this.size / this.parts, i));
+        }
+    }
+
+    @Benchmark
+    public long multiIterable() {
+        final MultiIterable<Integer> multi = new MultiIterable<Integer>();
+        for (final List<Integer> part : this.data) {
+            multi.append(part);
+        }
+        return Iter.of(multi.iterator()).reduce(0L, SUM);
+    }
+
+    @Benchmark
+    public long nestedLoop() {
+        long result = 0L;
+        for (final List<Integer> part : this.data) {
+            for (final Integer value : part) {
+                result = SUM.apply(result, value);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public long streamFlatMap() {
+        return this.data.stream().flatMap(List::stream).reduce(0L, SUM::apply, Long::sum);
+    }
+}
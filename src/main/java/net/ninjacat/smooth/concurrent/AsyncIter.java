@@ -0,0 +1,465 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.concurrent;
+
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Function2;
+import net.ninjacat.smooth.functions.Predicate;
+import net.ninjacat.smooth.functions.Procedure;
+import net.ninjacat.smooth.functions.Provider;
+import net.ninjacat.smooth.utils.Try;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Asynchronous counterpart of {@link net.ninjacat.smooth.iterators.Iter}. Elements are pushed to a
+ * {@link Subscriber} only after it requests them, so consumer controls how many elements are produced and no thread
+ * is blocked while there is no demand.
+ * </p><p>
+ * Operators keep demand bounded end to end: {@link #map(Func)} and {@link #filter(Predicate)} pass requests upstream
+ * as they are, {@link #mapAsync(Func, int)} never has more than a fixed number of elements in flight.
+ * </p><p>
+ * Each subscriber gets its own stream of elements, for example:
+ * <pre>
+ *     AsyncIter.of(ids, executor).mapAsync(load, 8).filter(isActive).toList().onSuccess(handler);
+ * </pre>
+ *
+ * @param <E> type of elements
+ */
+public abstract class AsyncIter<E> {
+    /**
+     * Number of elements requested at once by {@link #reduce(Object, Function2)} and {@link #toList()}
+     */
+    static final int BATCH_SIZE = 128;
+
+    /**
+     * Starts delivering elements to the subscriber. {@link Subscriber#onSubscribe(Subscription)} is called before
+     * this method returns.
+     *
+     * @param subscriber receiver of elements
+     */
+    public abstract void subscribe(Subscriber<? super E> subscriber);
+
+    /**
+     * Creates asynchronous stream of elements of an iterable. Each subscriber gets its own iterator, which is read
+     * by executor tasks only while there is outstanding demand.
+     *
+     * @param iterable source of elements
+     * @param executor executor to read elements on
+     * @param <E>      type of elements
+     * @return asynchronous stream
+     */
+    public static <E> AsyncIter<E> of(final Iterable<E> iterable, final ExecutorService executor) {
+        return new AsyncIter<E>() {
+            @Override
+            public void subscribe(final Subscriber<? super E> subscriber) {
+                final IterableSubscription<E> subscription =
+                        new IterableSubscription<E>(iterable.iterator(), executor, subscriber);
+                subscriber.onSubscribe(subscription);
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Creates asynchronous stream of results of futures. Next future is requested from the provider only when
+     * previous one has completed and there is outstanding demand, so at most one element is being produced at a time.
+     * </p><p>
+     * Stream ends when provider returns {@code null} and fails when any of the futures fails.
+     * </p>
+     *
+     * @param next provider of futures for consecutive elements
+     * @param <E>  type of elements
+     * @return asynchronous stream
+     */
+    public static <E> AsyncIter<E> fromFutures(final Provider<Future<E>> next) {
+        return new AsyncIter<E>() {
+            @Override
+            public void subscribe(final Subscriber<? super E> subscriber) {
+                subscriber.onSubscribe(new FutureSubscription<E>(next, subscriber));
+            }
+        };
+    }
+
+    /**
+     * Creates stream of elements converted with a function.
+     *
+     * @param func conversion function
+     * @param <R>  type of converted elements
+     * @return asynchronous stream
+     */
+    public <R> AsyncIter<R> map(final Func<R, E> func) {
+        return new AsyncIter<R>() {
+            @Override
+            public void subscribe(final Subscriber<? super R> subscriber) {
+                AsyncIter.this.subscribe(new Operator<E, R>(subscriber) {
+                    @Override
+                    protected void next(final E element) {
+                        this.downstream.onNext(func.apply(element));
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Creates stream of elements matching predicate. Each element which is filtered out is replaced by a request for
+     * one more element.
+     *
+     * @param predicate predicate to check elements
+     * @return asynchronous stream
+     */
+    public AsyncIter<E> filter(final Predicate<E> predicate) {
+        return new AsyncIter<E>() {
+            @Override
+            public void subscribe(final Subscriber<? super E> subscriber) {
+                AsyncIter.this.subscribe(new Operator<E, E>(subscriber) {
+                    @Override
+                    protected void next(final E element) {
+                        if (predicate.matches(element)) {
+                            this.downstream.onNext(element);
+                        } else {
+                            this.upstream.request(1);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * <p>
+     * Creates stream of results of asynchronous conversion. Up to {@code parallelism} conversions run at the same
+     * time, results are delivered in the order of original elements.
+     * </p><p>
+     * Elements in flight and results waiting for demand together never exceed {@code parallelism}, upstream is asked
+     * for one more element only when a result is delivered.
+     * </p>
+     *
+     * @param func        function starting conversion of an element
+     * @param parallelism maximum number of elements in flight
+     * @param <R>         type of converted elements
+     * @return asynchronous stream
+     * @throws IllegalArgumentException if parallelism is not positive
+     */
+    public <R> AsyncIter<R> mapAsync(final Func<Future<R>, E> func, final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        return new MapAsync<R, E>(this, func, parallelism);
+    }
+
+    /**
+     * Folds all the elements of the stream into a single value. Elements are requested in batches of
+     * {@value #BATCH_SIZE}.
+     *
+     * @param starting initial value
+     * @param fold     function combining accumulated value with next element
+     * @param <R>      type of result
+     * @return future result of folding
+     */
+    public <R> Future<R> reduce(final R starting, final Function2<R, R, E> fold) {
+        final Future<R> result = new Future<R>();
+        subscribe(new Subscriber<E>() {
+            private Subscription subscription;
+            private R value = starting;
+            private int received;
+            private boolean failed;
+
+            @Override
+            public void onSubscribe(final Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(BATCH_SIZE);
+            }
+
+            @Override
+            public void onNext(final E element) {
+                if (this.failed) {
+                    return;
+                }
+                try {
+                    this.value = fold.apply(this.value, element);
+                } catch (final RuntimeException e) {
+                    this.failed = true;
+                    this.subscription.cancel();
+                    result.complete(Try.<R>failure(e));
+                    return;
+                }
+                this.received += 1;
+                if (this.received == BATCH_SIZE) {
+                    this.received = 0;
+                    this.subscription.request(BATCH_SIZE);
+                }
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+                if (!this.failed) {
+                    result.complete(Try.<R>failure(error));
+                }
+            }
+
+            @Override
+            public void onComplete() {
+                if (!this.failed) {
+                    result.complete(Try.success(this.value));
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Collects all the elements of the stream into a list.
+     *
+     * @return future list of elements
+     */
+    public Future<List<E>> toList() {
+        return reduce(new ArrayList<E>(), new Function2<List<E>, List<E>, E>() {
+            @Override
+            public List<E> apply(final List<E> list, final E element) {
+                list.add(element);
+                return list;
+            }
+        });
+    }
+
+    /**
+     * Adds demand to the requested counter, demand of {@link Long#MAX_VALUE} is treated as unbounded.
+     *
+     * @return value of the counter before the demand was added
+     */
+    static long addDemand(final AtomicLong requested, final long n) {
+        if (n <= 0) {
+            throw new IllegalArgumentException("Requested number of elements must be positive");
+        }
+        while (true) {
+            final long current = requested.get();
+            final long updated = current + n < 0 ? Long.MAX_VALUE : current + n;
+            if (requested.compareAndSet(current, updated)) {
+                return current;
+            }
+        }
+    }
+
+    /**
+     * Removes delivered elements from the requested counter, unless demand is unbounded.
+     *
+     * @return remaining demand
+     */
+    static long produced(final AtomicLong requested, final long n) {
+        final long current = requested.get();
+        return current == Long.MAX_VALUE ? current : requested.addAndGet(-n);
+    }
+
+    /**
+     * Subscriber which converts elements and passes them downstream. Requests and cancellation go straight upstream,
+     * failure of conversion cancels upstream and is reported downstream.
+     */
+    private abstract static class Operator<E, R> implements Subscriber<E> {
+        protected final Subscriber<? super R> downstream;
+        protected Subscription upstream;
+        private boolean done;
+
+        Operator(final Subscriber<? super R> downstream) {
+            this.downstream = downstream;
+        }
+
+        protected abstract void next(E element);
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.upstream = subscription;
+            this.downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(final E element) {
+            if (this.done) {
+                return;
+            }
+            try {
+                next(element);
+            } catch (final RuntimeException e) {
+                this.done = true;
+                this.upstream.cancel();
+                this.downstream.onError(e);
+            }
+        }
+
+        @Override
+        public void onError(final Throwable error) {
+            if (!this.done) {
+                this.done = true;
+                this.downstream.onError(error);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!this.done) {
+                this.done = true;
+                this.downstream.onComplete();
+            }
+        }
+    }
+
+    /**
+     * Reads iterator in an executor task which runs only while there is outstanding demand. New task is started
+     * when demand appears after all previous requests were satisfied.
+     */
+    private static final class IterableSubscription<E> implements Subscription, Runnable {
+        private final Iterator<E> iterator;
+        private final ExecutorService executor;
+        private final Subscriber<? super E> subscriber;
+        private final AtomicLong requested;
+        private volatile boolean cancelled;
+
+        private IterableSubscription(final Iterator<E> iterator, final ExecutorService executor,
+                                     final Subscriber<? super E> subscriber) {
+            this.iterator = iterator;
+            this.executor = executor;
+            this.subscriber = subscriber;
+            this.requested = new AtomicLong();
+        }
+
+        @Override
+        public void request(final long n) {
+            if (addDemand(this.requested, n) == 0) {
+                this.executor.execute(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                long demand = this.requested.get();
+                while (demand > 0) {
+                    long emitted = 0;
+                    while (emitted < demand) {
+                        if (this.cancelled) {
+                            return;
+                        }
+                        if (!this.iterator.hasNext()) {
+                            this.cancelled = true;
+                            this.subscriber.onComplete();
+                            return;
+                        }
+                        this.subscriber.onNext(this.iterator.next());
+                        emitted += 1;
+                    }
+                    demand = produced(this.requested, emitted);
+                }
+            } catch (final RuntimeException e) {
+                this.cancelled = true;
+                this.subscriber.onError(e);
+            }
+        }
+    }
+
+    /**
+     * Requests next future from the provider when previous one has completed and there is outstanding demand.
+     * Futures completing in other threads and new requests are serialized with a work-in-progress counter.
+     */
+    private static final class FutureSubscription<E> implements Subscription {
+        private final Provider<Future<E>> provider;
+        private final Subscriber<? super E> subscriber;
+        private final AtomicLong requested;
+        private final AtomicInteger wip;
+        private volatile boolean waiting;
+        private volatile boolean cancelled;
+
+        private FutureSubscription(final Provider<Future<E>> provider, final Subscriber<? super E> subscriber) {
+            this.provider = provider;
+            this.subscriber = subscriber;
+            this.requested = new AtomicLong();
+            this.wip = new AtomicInteger();
+        }
+
+        @Override
+        public void request(final long n) {
+            addDemand(this.requested, n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        private void drain() {
+            if (this.wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            while (missed != 0) {
+                if (!this.cancelled && !this.waiting && this.requested.get() > 0) {
+                    fetch();
+                }
+                missed = this.wip.addAndGet(-missed);
+            }
+        }
+
+        private void fetch() {
+            final Future<E> future;
+            try {
+                future = this.provider.get();
+            } catch (final RuntimeException e) {
+                this.cancelled = true;
+                this.subscriber.onError(e);
+                return;
+            }
+            if (null == future) {
+                this.cancelled = true;
+                this.subscriber.onComplete();
+                return;
+            }
+            this.waiting = true;
+            future.onSuccess(new Procedure<E>() {
+                @Override
+                public void call(final E value) {
+                    if (!FutureSubscription.this.cancelled) {
+                        produced(FutureSubscription.this.requested, 1);
+                        FutureSubscription.this.subscriber.onNext(value);
+                        FutureSubscription.this.waiting = false;
+                        drain();
+                    }
+                }
+            });
+            future.onFailure(new Procedure<Throwable>() {
+                @Override
+                public void call(final Throwable error) {
+                    if (!FutureSubscription.this.cancelled) {
+                        FutureSubscription.this.cancelled = true;
+                        FutureSubscription.this.subscriber.onError(error);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -117,10 +117,15 @@ public class Future<E> {
      */
     public final Future<E> onSuccess(final Procedure<E> onSuccess) {
         Validators.validateNull(this.successHandler, new IllegalStateException("Cannot reassign onSuccess handler"));
-        if (null != this.result && this.result.isSuccessful()) {
-            onSuccess.call(this.result.getValue());
-        } else {
-            this.successHandler = onSuccess;
+        final Try<E> completed;
+        synchronized (this) {
+            completed = this.result;
+            if (null == completed || !completed.isSuccessful()) {
+                this.successHandler = onSuccess;
+            }
+        }
+        if (null != completed && completed.isSuccessful()) {
+            onSuccess.call(completed.getValue());
         }
         return this;
     }
@@ -136,10 +141,15 @@ public class Future<E> {
      */
     public final Future<E> onFailure(final Procedure<Throwable> onFailure) {
         Validators.validateNull(this.failHandler, new IllegalStateException("Cannot reassign onFailure handler"));
-        if (null != this.result && !this.result.isSuccessful()) {
-            onFailure.call(this.result.getFailure());
-        } else {
-            this.failHandler = onFailure;
+        final Try<E> completed;
+        synchronized (this) {
+            completed = this.result;
+            if (null == completed || completed.isSuccessful()) {
+                this.failHandler = onFailure;
+            }
+        }
+        if (null != completed && !completed.isSuccessful()) {
+            onFailure.call(completed.getFailure());
         }
         return this;
     }
@@ -164,18 +174,30 @@ public class Future<E> {
         this.executor.submit(new Runnable() {
             @Override
             public void run() {
-                Future.this.result = Try.execute(callable);
-                if (Future.this.result.isSuccessful()) {
-                    reportSuccess(Future.this.result.getValue());
-                } else {
-                    reportFailure(Future.this.result.getFailure());
-                }
-                Future.this.latch.countDown();
+                complete(Try.execute(callable));
             }
         });
         return this;
     }
 
+    /**
+     * Completes this future with a result produced elsewhere, without executing any code. Handlers are called in
+     * the calling thread.
+     *
+     * @param outcome result of the future
+     */
+    void complete(final Try<E> outcome) {
+        synchronized (this) {
+            this.result = outcome;
+        }
+        if (outcome.isSuccessful()) {
+            reportSuccess(outcome.getValue());
+        } else {
+            reportFailure(outcome.getFailure());
+        }
+        this.latch.countDown();
+    }
+
     /**
      * Returns the result of the Future. This call will block if result is not available yet. Result is returned
      * wrapped in {@link Try} so that exceptions during future execution are captured.
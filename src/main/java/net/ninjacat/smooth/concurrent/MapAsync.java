@@ -0,0 +1,197 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.concurrent;
+
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Procedure;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Asynchronous stream of results of asynchronous conversion of elements, delivered in the order of original
+ * elements.
+ * </p><p>
+ * Upstream is asked for {@code parallelism} elements on subscription and for one more element every time a result is
+ * delivered downstream, so number of conversions in flight and results waiting for demand never exceeds
+ * {@code parallelism}.
+ * </p>
+ *
+ * @param <R> type of converted elements
+ * @param <E> type of original elements
+ */
+final class MapAsync<R, E> extends AsyncIter<R> {
+    private final AsyncIter<E> upstream;
+    private final Func<Future<R>, E> func;
+    private final int parallelism;
+
+    MapAsync(final AsyncIter<E> upstream, final Func<Future<R>, E> func, final int parallelism) {
+        this.upstream = upstream;
+        this.func = func;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super R> subscriber) {
+        this.upstream.subscribe(new MapAsyncSubscriber(subscriber));
+    }
+
+    /**
+     * Result of conversion of a single element
+     */
+    private static final class Slot<R> {
+        private volatile boolean done;
+        private R value;
+    }
+
+    /**
+     * Keeps slots in the order elements were received. Completed slots at the head of the queue are delivered
+     * by whichever thread calls {@link #drain()}, calls are serialized with a work-in-progress counter.
+     */
+    private final class MapAsyncSubscriber implements Subscriber<E>, Subscription {
+        private final Subscriber<? super R> downstream;
+        private final Queue<Slot<R>> slots;
+        private final AtomicLong requested;
+        private final AtomicInteger wip;
+        private Subscription subscription;
+        private volatile Throwable error;
+        private volatile boolean completed;
+        private volatile boolean cancelled;
+
+        private MapAsyncSubscriber(final Subscriber<? super R> downstream) {
+            this.downstream = downstream;
+            this.slots = new ArrayDeque<Slot<R>>();
+            this.requested = new AtomicLong();
+            this.wip = new AtomicInteger();
+        }
+
+        @Override
+        public void onSubscribe(final Subscription subscription) {
+            this.subscription = subscription;
+            this.downstream.onSubscribe(this);
+            subscription.request(MapAsync.this.parallelism);
+        }
+
+        @Override
+        public void onNext(final E element) {
+            if (this.cancelled || null != this.error) {
+                return;
+            }
+            final Future<R> future;
+            try {
+                future = MapAsync.this.func.apply(element);
+            } catch (final RuntimeException e) {
+                fail(e);
+                return;
+            }
+            final Slot<R> slot = new Slot<R>();
+            synchronized (this.slots) {
+                this.slots.add(slot);
+            }
+            future.onSuccess(new Procedure<R>() {
+                @Override
+                public void call(final R value) {
+                    slot.value = value;
+                    slot.done = true;
+                    drain();
+                }
+            });
+            future.onFailure(new Procedure<Throwable>() {
+                @Override
+                public void call(final Throwable failure) {
+                    fail(failure);
+                }
+            });
+        }
+
+        @Override
+        public void onError(final Throwable failure) {
+            fail(failure);
+        }
+
+        @Override
+        public void onComplete() {
+            this.completed = true;
+            drain();
+        }
+
+        @Override
+        public void request(final long n) {
+            addDemand(this.requested, n);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            this.cancelled = true;
+            this.subscription.cancel();
+        }
+
+        private void fail(final Throwable failure) {
+            if (null == this.error) {
+                this.error = failure;
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (this.wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            while (missed != 0) {
+                final long demand = this.requested.get();
+                long emitted = 0;
+                while (!this.cancelled) {
+                    if (null != this.error) {
+                        cancel();
+                        this.downstream.onError(this.error);
+                        break;
+                    }
+                    final boolean upstreamDone = this.completed;
+                    final Slot<R> head;
+                    synchronized (this.slots) {
+                        head = this.slots.peek();
+                    }
+                    if (null == head) {
+                        if (upstreamDone) {
+                            this.cancelled = true;
+                            this.downstream.onComplete();
+                        }
+                        break;
+                    }
+                    if (!head.done || emitted == demand) {
+                        break;
+                    }
+                    synchronized (this.slots) {
+                        this.slots.poll();
+                    }
+                    this.downstream.onNext(head.value);
+                    emitted += 1;
+                    this.subscription.request(1);
+                }
+                if (emitted > 0) {
+                    produced(this.requested, emitted);
+                }
+                missed = this.wip.addAndGet(-missed);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.concurrent;
+
+/**
+ * <p>
+ * Receiver of elements of {@link AsyncIter}.
+ * </p><p>
+ * {@link #onSubscribe(Subscription)} is called first, after that subscriber receives no more elements than it has
+ * requested through the subscription, followed by either {@link #onComplete()} or {@link #onError(Throwable)}.
+ * Calls are never concurrent, but can be made from different threads.
+ * </p>
+ *
+ * @param <E> type of elements
+ */
+public interface Subscriber<E> {
+
+    /**
+     * Called once before any other method.
+     *
+     * @param subscription subscription to request elements through
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called for every requested element.
+     *
+     * @param element next element
+     */
+    void onNext(E element);
+
+    /**
+     * Called when stream fails, no more elements will be delivered after that.
+     *
+     * @param error cause of failure
+     */
+    void onError(Throwable error);
+
+    /**
+     * Called after the last element of stream.
+     */
+    void onComplete();
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.concurrent;
+
+/**
+ * Link between {@link AsyncIter} and its {@link Subscriber}. Subscriber uses it to request more elements or to stop
+ * receiving them.
+ */
+public interface Subscription {
+
+    /**
+     * Requests up to {@code n} more elements. Demand is added to the elements requested before and not delivered yet.
+     * Use {@link Long#MAX_VALUE} to receive all the elements without any further requests.
+     *
+     * @param n number of elements to request
+     * @throws IllegalArgumentException if n is not positive
+     */
+    void request(long n);
+
+    /**
+     * Stops delivery of elements. Some elements which were requested before may still be delivered.
+     */
+    void cancel();
+}
@@ -31,6 +31,13 @@ public class ArrayIterable<T> implements Iterable<T> {
         return new ArrayIterable<T>(data);
     }
 
+    /**
+     * @return wrapped array
+     */
+    T[] array() {
+        return this.data;
+    }
+
     @Override
     public Iterator<T> iterator() {
         return new ArrayIterator<T>(this.data);
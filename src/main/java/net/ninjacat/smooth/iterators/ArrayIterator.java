@@ -1,15 +1,18 @@
 package net.ninjacat.smooth.iterators;
 
-import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
  * Array iterator.
  * <p>
  * Reading from this iterator will reflect changes in the underlying array.
+ * <p>
+ * When used as a source of {@link Iter} the array is read by index without calls to {@link #next()}.
  */
-public class ArrayIterator<T> implements Iterator<T> {
+public class ArrayIterator<T> extends Source<T> {
 
     private final T[] data;
+    private final int end;
     private int position;
 
     /**
@@ -18,8 +21,13 @@ public class ArrayIterator<T> implements Iterator<T> {
      * @param data array to wrap
      */
     public ArrayIterator(final T[] data) {
+        this(data, 0, data.length);
+    }
+
+    ArrayIterator(final T[] data, final int from, final int end) {
         this.data = data;
-        this.position = 0;
+        this.position = from;
+        this.end = end;
     }
 
     /**
@@ -35,16 +43,51 @@ public class ArrayIterator<T> implements Iterator<T> {
 
     @Override
     public boolean hasNext() {
-        return this.position < this.data.length;
+        return this.position < this.end;
     }
 
     @Override
-    public synchronized T next() {
+    public T next() {
+        if (this.position >= this.end) {
+            throw new NoSuchElementException();
+        }
         return this.data[this.position++];
     }
 
     @Override
-    public void remove() {
-        throw new UnsupportedOperationException(getClass().getCanonicalName() + " does not support remove()");
+    long size() {
+        return this.end - this.position;
+    }
+
+    @Override
+    long skip(final long n) {
+        final int skipped = (int) Math.min(n, this.end - this.position);
+        this.position += skipped;
+        return skipped;
+    }
+
+    @Override
+    Source<T> trySplit() {
+        final int middle = this.position + (this.end - this.position) / 2;
+        if (middle == this.position) {
+            return null;
+        }
+        final Source<T> prefix = new ArrayIterator<T>(this.data, this.position, middle);
+        this.position = middle;
+        return prefix;
+    }
+
+    @Override
+    boolean drainTo(final Sink<? super T> sink) {
+        final T[] array = this.data;
+        final int limit = this.end;
+        for (int i = this.position; i < limit; i++) {
+            if (!sink.accept(array[i])) {
+                this.position = i + 1;
+                return false;
+            }
+        }
+        this.position = limit;
+        return true;
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts elements to and from binary form, used when elements have to be stored outside of memory, for example by
+ * {@link Iter#sorted(java.util.Comparator, int, Codec)}.
+ * {@link net.ninjacat.smooth.iterators.Codecs} has implementations of codecs for some types.
+ *
+ * @param <T> type of elements
+ */
+public interface Codec<T> {
+    /**
+     * Writes element to the output.
+     *
+     * @param value element to write
+     * @param out   output to write to
+     * @throws IOException if element cannot be written
+     */
+    void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * Reads element previously written by {@link #write(Object, DataOutput)}.
+     *
+     * @param in input to read from
+     * @return element
+     * @throws IOException if element cannot be read
+     */
+    T read(DataInput in) throws IOException;
+}
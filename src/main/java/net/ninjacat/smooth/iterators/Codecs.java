@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.io.*;
+
+/**
+ * Implementations of {@link Codec} for common types.
+ */
+public final class Codecs {
+    private static final Codec<String> STRINGS = new Codec<String>() {
+        @Override
+        public void write(final String value, final DataOutput out) throws IOException {
+            final byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(final DataInput in) throws IOException {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, "UTF-8");
+        }
+    };
+
+    private static final Codec<Integer> INTEGERS = new Codec<Integer>() {
+        @Override
+        public void write(final Integer value, final DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        @Override
+        public Integer read(final DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    private static final Codec<Long> LONGS = new Codec<Long>() {
+        @Override
+        public void write(final Long value, final DataOutput out) throws IOException {
+            out.writeLong(value);
+        }
+
+        @Override
+        public Long read(final DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    private static final Codec<Object> SERIALIZABLE = new Codec<Object>() {
+        @Override
+        public void write(final Object value, final DataOutput out) throws IOException {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final ObjectOutputStream objects = new ObjectOutputStream(bytes);
+            objects.writeObject(value);
+            objects.close();
+            out.writeInt(bytes.size());
+            out.write(bytes.toByteArray());
+        }
+
+        @Override
+        public Object read(final DataInput in) throws IOException {
+            final byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            final ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return objects.readObject();
+            } catch (final ClassNotFoundException e) {
+                throw new InvalidClassException(e.getMessage());
+            } finally {
+                objects.close();
+            }
+        }
+    };
+
+    private Codecs() {
+    }
+
+    /**
+     * @return codec for non-null strings, stored in UTF-8
+     */
+    public static Codec<String> strings() {
+        return STRINGS;
+    }
+
+    /**
+     * @return codec for non-null integers
+     */
+    public static Codec<Integer> integers() {
+        return INTEGERS;
+    }
+
+    /**
+     * @return codec for non-null longs
+     */
+    public static Codec<Long> longs() {
+        return LONGS;
+    }
+
+    /**
+     * Creates codec which uses standard Java serialization. It works with any {@link Serializable} elements, but
+     * is much slower and takes more space than specialized codecs.
+     *
+     * @param <T> type of elements
+     * @return codec for serializable elements
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Codec<T> serializable() {
+        return (Codec<T>) SERIALIZABLE;
+    }
+}
@@ -1,17 +1,60 @@
 package net.ninjacat.smooth.iterators;
 
 import java.util.Collection;
+import java.util.Iterator;
 
 /**
+ * <p>
  * Allows to collect values from {@link Iterable} to a {@link Collection}.
  * {@link net.ninjacat.smooth.iterators.Collectors} has implementations of collectors for some collection types.
+ * </p><p>
+ * Collector does not hold any state, it supplies a new collection every time elements are collected, so the same
+ * collector can be used many times and from several threads. {@link ParallelIter#collectWith(Collector)} collects
+ * each part of the source into its own collection and then combines them with {@link #combine(Collection, Collection)}.
+ * </p>
  */
-public interface Collector<T> {
+public abstract class Collector<T> {
+
+    /**
+     * Value of size hint when number of elements is not known
+     */
+    public static final int UNKNOWN_SIZE = -1;
+
+    /**
+     * Creates a new empty collection to collect elements into.
+     *
+     * @param sizeHint expected number of elements or {@link #UNKNOWN_SIZE}
+     * @return New collection.
+     */
+    public abstract Collection<T> supply(int sizeHint);
+
+    /**
+     * Merges two partial results, elements of the {@code right} collection follow elements of the {@code left} one.
+     * Either of the collections can be modified and returned.
+     *
+     * @param left  elements of the first part
+     * @param right elements of the second part
+     * @return Collection of elements of both parts.
+     */
+    public Collection<T> combine(final Collection<T> left, final Collection<T> right) {
+        left.addAll(right);
+        return left;
+    }
+
     /**
-     * Collects elements from {@link Iterable} into a {@link Collection}.
+     * Collects elements from {@link Iterable} into a new {@link Collection}.
      *
      * @param iterable Iterable to collect elements from.
      * @return New collection.
      */
-    Collection<T> collect(Iterable<T> iterable);
+    public Collection<T> collect(final Iterable<T> iterable) {
+        if (iterable instanceof Iter) {
+            return ((Iter<T>) iterable).collectWith(this);
+        }
+        if (iterable instanceof Collection) {
+            return Iter.of((Collection<T>) iterable).collectWith(this);
+        }
+        final Iterator<T> iterator = iterable.iterator();
+        return Iter.of(iterator).collectWith(this);
+    }
 }
@@ -1,11 +1,10 @@
 package net.ninjacat.smooth.iterators;
 
-import net.ninjacat.smooth.functions.Procedure;
-
 import java.util.*;
 
 /**
- * Set of utility methods which return some often-used {@link Collector}s
+ * Set of utility methods which return some often-used {@link Collector}s. Collections are presized when number of
+ * elements is known in advance.
  */
 public final class Collectors {
     private Collectors() {
@@ -18,7 +17,12 @@ public final class Collectors {
      * @return {@link Collector} into {@link ArrayList}
      */
     public static <T> Collector<T> arrayList() {
-        return anyCollector(new ArrayList<T>());
+        return new Collector<T>() {
+            @Override
+            public Collection<T> supply(final int sizeHint) {
+                return sizeHint >= 0 ? new ArrayList<T>(sizeHint) : new ArrayList<T>();
+            }
+        };
     }
 
     /**
@@ -28,7 +32,12 @@ public final class Collectors {
      * @return {@link Collector} into {@link LinkedList}
      */
     public static <T> Collector<T> linkedList() {
-        return anyCollector(new LinkedList<T>());
+        return new Collector<T>() {
+            @Override
+            public Collection<T> supply(final int sizeHint) {
+                return new LinkedList<T>();
+            }
+        };
     }
 
     /**
@@ -38,7 +47,13 @@ public final class Collectors {
      * @return {@link Collector} into {@link HashSet}
      */
     public static <T> Collector<T> hashSet() {
-        return anyCollector(new HashSet<T>());
+        return new SetCollector<T>() {
+            @Override
+            public Collection<T> supply(final int sizeHint) {
+                return sizeHint >= 0 ? new HashSet<T>((int) Math.min(Integer.MAX_VALUE, sizeHint * 4L / 3 + 1))
+                        : new HashSet<T>();
+            }
+        };
     }
 
     /**
@@ -48,34 +63,26 @@ public final class Collectors {
      * @return {@link Collector} into {@link TreeSet}
      */
     public static <T> Collector<T> treeSet() {
-        return anyCollector(new TreeSet<T>());
-    }
-
-    private static <T> Collector<T> anyCollector(final Collection<T> collection) {
-        return new Collector<T>() {
+        return new SetCollector<T>() {
             @Override
-            public Collection<T> collect(final Iterable<T> iterable) {
-                final AddToCollection<T> collector = new AddToCollection<T>(collection);
-                Iter.of(iterable.iterator()).forEach(collector);
-                return collector.getCollection();
+            public Collection<T> supply(final int sizeHint) {
+                return new TreeSet<T>();
             }
         };
     }
 
-    private static final class AddToCollection<T> extends Procedure<T> {
-        private final Collection<T> collection;
-
-        private AddToCollection(final Collection<T> collection) {
-            this.collection = collection;
-        }
-
+    /**
+     * Sets are combined by adding smaller set into the larger one, order of elements does not matter.
+     */
+    private abstract static class SetCollector<T> extends Collector<T> {
         @Override
-        public void call(final T t) {
-            this.collection.add(t);
-        }
-
-        public Collection<T> getCollection() {
-            return this.collection;
+        public Collection<T> combine(final Collection<T> left, final Collection<T> right) {
+            if (left.size() >= right.size()) {
+                left.addAll(right);
+                return left;
+            }
+            right.addAll(left);
+            return right;
         }
     }
 }
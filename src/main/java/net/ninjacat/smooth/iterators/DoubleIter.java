@@ -0,0 +1,385 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.DoubleFunc;
+import net.ninjacat.smooth.functions.DoublePredicate;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Functional style rich iterator over primitive {@code double} values</p>
+ * <p>
+ * Works similar to {@link Iter}, but elements are never boxed, which makes it suitable for numeric aggregation over
+ * large amounts of data. Operations {@link #map(DoubleFunc)} and {@link #filter(DoublePredicate)} are recorded as stages of
+ * a pipeline and applied to each element in a single loop when terminal operation is called.
+ * </p>
+ * <p>Use {@link #boxed()} to continue processing with generic {@link Iter}</p>
+ */
+public class DoubleIter {
+    private static final DoubleStage[] NO_STAGES = new DoubleStage[0];
+
+    private final DoubleSource source;
+    private final DoubleStage[] stages;
+    private final boolean sized;
+
+    private DoubleIter(final DoubleSource source, final DoubleStage[] stages, final boolean sized) {
+        this.source = source;
+        this.stages = stages;
+        this.sized = sized;
+    }
+
+    /**
+     * Creates rich iterator over array of {@code double}s. Array is not copied.
+     *
+     * @param data array or varargs
+     * @return Primitive rich iterator
+     */
+    public static DoubleIter of(final double... data) {
+        return new DoubleIter(new ArraySource(data), NO_STAGES, true);
+    }
+
+    /**
+     * Maps all the values to other values using supplied function. Transformation is applied lazily.
+     *
+     * @param func mapping function
+     * @return Primitive rich iterator of mapped values
+     */
+    public DoubleIter map(final DoubleFunc func) {
+        return then(this.sized, new DoubleStage() {
+            @Override
+            DoubleSink wrap(final DoubleSink downstream) {
+                return new DoubleSink() {
+                    @Override
+                    boolean accept(final double value) {
+                        return downstream.accept(func.apply(value));
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * Filters out values which do not match predicate. Predicate is applied lazily.
+     *
+     * @param predicate function to verify element, should return {@code true} for elements to keep
+     * @return Primitive rich iterator of matching values
+     */
+    public DoubleIter filter(final DoublePredicate predicate) {
+        return then(false, new DoubleStage() {
+            @Override
+            DoubleSink wrap(final DoubleSink downstream) {
+                return new DoubleSink() {
+                    @Override
+                    boolean accept(final double value) {
+                        return !predicate.matches(value) || downstream.accept(value);
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * @return Sum of all the elements
+     */
+    public double sum() {
+        final Sum sum = new Sum();
+        drain(sum);
+        return sum.result;
+    }
+
+    /**
+     * @return Number of elements
+     */
+    public long count() {
+        final Count count = new Count();
+        drain(count);
+        return count.result;
+    }
+
+    /**
+     * Finds smallest element in the same way as {@link Math#min(double, double)}, so if any element is NaN the
+     * result is NaN and {@code -0.0} is smaller than {@code 0.0}.
+     *
+     * @return Smallest element
+     * @throws NoSuchElementException if iterator is empty
+     */
+    public double min() {
+        final Extremum min = new Extremum(false);
+        drain(min);
+        return min.get();
+    }
+
+    /**
+     * Finds largest element in the same way as {@link Math#max(double, double)}, so if any element is NaN the
+     * result is NaN and {@code 0.0} is larger than {@code -0.0}.
+     *
+     * @return Largest element
+     * @throws NoSuchElementException if iterator is empty
+     */
+    public double max() {
+        final Extremum max = new Extremum(true);
+        drain(max);
+        return max.get();
+    }
+
+    /**
+     * Collects all the elements into a new array. If number of elements is known, array is allocated once. If only
+     * upper bound is known, array never grows beyond it.
+     *
+     * @return array of elements
+     */
+    public double[] toArray() {
+        final long bound = this.source.size();
+        final long exact = this.sized ? bound : -1;
+        final ToArray collector = new ToArray(0 <= exact && exact < Integer.MAX_VALUE ? (int) exact : 16, bound);
+        drain(collector);
+        return collector.get();
+    }
+
+    /**
+     * Converts this iterator into generic rich iterator of boxed values. Values are boxed one at a time when
+     * they are requested.
+     *
+     * @return Rich iterator of {@link Double} values
+     */
+    public Iter<Double> boxed() {
+        return Iter.of(new BoxedSource());
+    }
+
+    private DoubleIter then(final boolean keepsSize, final DoubleStage stage) {
+        final DoubleStage[] result = Arrays.copyOf(this.stages, this.stages.length + 1);
+        result[this.stages.length] = stage;
+        return new DoubleIter(this.source, result, keepsSize);
+    }
+
+    private DoubleSink pipeline(final DoubleSink terminal) {
+        DoubleSink sink = terminal;
+        for (int i = this.stages.length - 1; i >= 0; i--) {
+            sink = this.stages[i].wrap(sink);
+        }
+        return sink;
+    }
+
+    private boolean drain(final DoubleSink sink) {
+        return this.source.drainTo(pipeline(sink));
+    }
+
+    /**
+     * Receiver of primitive elements
+     */
+    private abstract static class DoubleSink {
+        abstract boolean accept(double value);
+    }
+
+    /**
+     * Single intermediate operation of the pipeline
+     */
+    private abstract static class DoubleStage {
+        abstract DoubleSink wrap(DoubleSink downstream);
+    }
+
+    /**
+     * Source of primitive elements which can be read one by one or pushed into a sink
+     */
+    private abstract static class DoubleSource {
+        abstract boolean hasNext();
+
+        abstract double next();
+
+        abstract boolean drainTo(DoubleSink sink);
+
+        abstract long size();
+    }
+
+    private static final class ArraySource extends DoubleSource {
+        private final double[] data;
+        private int position;
+
+        private ArraySource(final double[] data) {
+            this.data = data;
+            this.position = 0;
+        }
+
+        @Override
+        boolean hasNext() {
+            return this.position < this.data.length;
+        }
+
+        @Override
+        double next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.data[this.position++];
+        }
+
+        @Override
+        boolean drainTo(final DoubleSink sink) {
+            final double[] array = this.data;
+            for (int i = this.position; i < array.length; i++) {
+                if (!sink.accept(array[i])) {
+                    this.position = i + 1;
+                    return false;
+                }
+            }
+            this.position = array.length;
+            return true;
+        }
+
+        @Override
+        long size() {
+            return this.data.length - this.position;
+        }
+    }
+
+    private static final class Sum extends DoubleSink {
+        private double result;
+
+        @Override
+        boolean accept(final double value) {
+            this.result += value;
+            return true;
+        }
+    }
+
+    private static final class Count extends DoubleSink {
+        private long result;
+
+        @Override
+        boolean accept(final double value) {
+            this.result += 1;
+            return true;
+        }
+    }
+
+    private static final class Extremum extends DoubleSink {
+        private final boolean largest;
+        private boolean found;
+        private double result;
+
+        private Extremum(final boolean largest) {
+            this.largest = largest;
+        }
+
+        @Override
+        boolean accept(final double value) {
+            if (!this.found) {
+                this.result = value;
+                this.found = true;
+            } else {
+                this.result = this.largest ? Math.max(this.result, value) : Math.min(this.result, value);
+            }
+            return true;
+        }
+
+        private double get() {
+            if (!this.found) {
+                throw new NoSuchElementException("Iterator is empty");
+            }
+            return this.result;
+        }
+    }
+
+    private static final class ToArray extends DoubleSink {
+        private final long bound;
+        private double[] buffer;
+        private int size;
+
+        private ToArray(final int capacity, final long bound) {
+            this.buffer = new double[capacity];
+            this.bound = bound;
+        }
+
+        @Override
+        boolean accept(final double value) {
+            if (this.size == this.buffer.length) {
+                final int next = Math.max(16, this.size * 2);
+                this.buffer = Arrays.copyOf(this.buffer, this.bound > this.size ? (int) Math.min(next, this.bound) : next);
+            }
+            this.buffer[this.size++] = value;
+            return true;
+        }
+
+        private double[] get() {
+            return this.size == this.buffer.length ? this.buffer : Arrays.copyOf(this.buffer, this.size);
+        }
+    }
+
+    /**
+     * Generic source which boxes values coming out of the primitive pipeline
+     */
+    private final class BoxedSource extends Source<Double> {
+        private final DoubleSink pull;
+        private boolean buffered;
+        private boolean stopped;
+        private double nextValue;
+
+        private BoxedSource() {
+            this.pull = pipeline(new DoubleSink() {
+                @Override
+                boolean accept(final double value) {
+                    BoxedSource.this.nextValue = value;
+                    BoxedSource.this.buffered = true;
+                    return true;
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!this.buffered && !this.stopped && DoubleIter.this.source.hasNext()) {
+                this.stopped = !this.pull.accept(DoubleIter.this.source.next());
+            }
+            return this.buffered;
+        }
+
+        @Override
+        public Double next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.buffered = false;
+            return this.nextValue;
+        }
+
+        @Override
+        boolean drainTo(final Sink<? super Double> sink) {
+            if (this.buffered) {
+                this.buffered = false;
+                if (!sink.accept(this.nextValue)) {
+                    return false;
+                }
+            }
+            if (this.stopped) {
+                return true;
+            }
+            return drain(new DoubleSink() {
+                @Override
+                boolean accept(final double value) {
+                    return sink.accept(value);
+                }
+            });
+        }
+
+        @Override
+        long size() {
+            return DoubleIter.this.sized && !this.buffered && !this.stopped ? DoubleIter.this.source.size() : UNKNOWN_SIZE;
+        }
+    }
+}
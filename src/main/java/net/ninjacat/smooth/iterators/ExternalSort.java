@@ -0,0 +1,381 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * <p>
+ * Source which sorts elements of a rich iterator when they are requested for the first time.
+ * </p><p>
+ * Elements are collected in memory until the memory budget is reached. If all the elements fit, they are sorted in
+ * memory. Otherwise each full buffer is sorted and written to a temporary file as a sorted run, and the runs are
+ * lazily merged with a heap, reading one element of each run at a time. If there are too many runs, they are first
+ * merged in groups into longer runs, so that number of simultaneously open files stays limited.
+ * </p><p>
+ * Sort is stable. Temporary files are deleted as soon as they are read completely, when the consumer stops early or
+ * when sorting or merging fails.
+ * </p>
+ *
+ * @param <E> type of elements
+ */
+final class ExternalSort<E> extends Source<E> {
+    /**
+     * Maximum number of runs merged at once
+     */
+    static final int MAX_MERGE_WIDTH = 64;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Iter<E> upstream;
+    private final Comparator<? super E> comparator;
+    private final int memoryBudget;
+    private final Codec<E> codec;
+    private Source<E> sorted;
+
+    /**
+     * @param upstream     elements to sort
+     * @param comparator   comparator defining the order
+     * @param memoryBudget maximum number of elements kept in memory
+     * @param codec        codec to write elements to temporary files, may be {@code null} if budget is unlimited
+     */
+    ExternalSort(final Iter<E> upstream, final Comparator<? super E> comparator, final int memoryBudget, final Codec<E> codec) {
+        this.upstream = upstream;
+        this.comparator = comparator;
+        this.memoryBudget = memoryBudget;
+        this.codec = codec;
+    }
+
+    @Override
+    public boolean hasNext() {
+        final Source<E> source = sorted();
+        try {
+            return source.hasNext();
+        } catch (final RuntimeException e) {
+            source.cancel();
+            throw e;
+        }
+    }
+
+    @Override
+    public E next() {
+        final Source<E> source = sorted();
+        try {
+            return source.next();
+        } catch (final RuntimeException e) {
+            source.cancel();
+            throw e;
+        }
+    }
+
+    @Override
+    boolean drainTo(final Sink<? super E> sink) {
+        final Source<E> source = sorted();
+        try {
+            return source.drainTo(sink);
+        } catch (final RuntimeException e) {
+            source.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Sorting does not change the number of elements, so it is known without sorting.
+     */
+    @Override
+    long size() {
+        return null == this.sorted ? this.upstream.size(true) : this.sorted.size();
+    }
+
+    @Override
+    void cancel() {
+        if (null != this.sorted) {
+            this.sorted.cancel();
+        }
+    }
+
+    private Source<E> sorted() {
+        if (null == this.sorted) {
+            final Spiller spiller = new Spiller();
+            try {
+                this.upstream.drain(spiller);
+                this.sorted = spiller.finish();
+            } catch (final RuntimeException e) {
+                spiller.discard();
+                throw e;
+            }
+        }
+        return this.sorted;
+    }
+
+    /**
+     * Collects elements into a buffer and writes the buffer into a sorted run when it is full.
+     */
+    private final class Spiller extends Sink<E> {
+        private List<Run<E>> runs = new ArrayList<Run<E>>();
+        private Object[] buffer;
+        private int count;
+
+        private Spiller() {
+            final long size = ExternalSort.this.upstream.size(true);
+            final long capacity = size >= 0 ? Math.min(size, ExternalSort.this.memoryBudget) : INITIAL_CAPACITY;
+            this.buffer = new Object[(int) Math.min(capacity, ExternalSort.this.memoryBudget)];
+        }
+
+        @Override
+        boolean accept(final E value) {
+            if (this.count == this.buffer.length) {
+                if (this.count == ExternalSort.this.memoryBudget) {
+                    spill();
+                } else {
+                    final long grown = Math.max(INITIAL_CAPACITY, 2L * this.buffer.length);
+                    this.buffer = Arrays.copyOf(this.buffer, (int) Math.min(grown, ExternalSort.this.memoryBudget));
+                }
+            }
+            this.buffer[this.count++] = value;
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        Source<E> finish() {
+            if (this.runs.isEmpty()) {
+                Arrays.sort(this.buffer, 0, this.count, (Comparator<Object>) ExternalSort.this.comparator);
+                return new ArrayIterator<E>((E[]) this.buffer, 0, this.count);
+            }
+            if (this.count > 0) {
+                spill();
+            }
+            this.buffer = null;
+            while (this.runs.size() > MAX_MERGE_WIDTH) {
+                this.runs = mergeLevel(this.runs);
+            }
+            return merge(this.runs);
+        }
+
+        /**
+         * Deletes all the runs written so far, after sorting has failed.
+         */
+        void discard() {
+            this.buffer = null;
+            delete(this.runs);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void spill() {
+            Arrays.sort(this.buffer, 0, this.count, (Comparator<Object>) ExternalSort.this.comparator);
+            final RunWriter<E> writer = new RunWriter<E>(ExternalSort.this.codec);
+            try {
+                for (int i = 0; i < this.count; i++) {
+                    writer.write((E) this.buffer[i]);
+                    this.buffer[i] = null;
+                }
+            } catch (final RuntimeException e) {
+                writer.discard();
+                throw e;
+            }
+            this.runs.add(writer.finish());
+            this.count = 0;
+        }
+
+        /**
+         * Merges groups of runs into longer runs. If merging fails, runs which were already merged are deleted,
+         * the rest of the runs of the level are left for {@link #discard()}.
+         */
+        private List<Run<E>> mergeLevel(final List<Run<E>> level) {
+            final List<Run<E>> merged = new ArrayList<Run<E>>();
+            try {
+                for (int from = 0; from < level.size(); from += MAX_MERGE_WIDTH) {
+                    final List<Run<E>> group = level.subList(from, Math.min(level.size(), from + MAX_MERGE_WIDTH));
+                    final Source<E> merge = merge(group);
+                    final RunWriter<E> writer;
+                    try {
+                        writer = new RunWriter<E>(ExternalSort.this.codec);
+                    } catch (final RuntimeException e) {
+                        merge.cancel();
+                        throw e;
+                    }
+                    try {
+                        while (merge.hasNext()) {
+                            writer.write(merge.next());
+                        }
+                    } catch (final RuntimeException e) {
+                        merge.cancel();
+                        writer.discard();
+                        throw e;
+                    }
+                    merged.add(writer.finish());
+                }
+            } catch (final RuntimeException e) {
+                delete(merged);
+                throw e;
+            }
+            return merged;
+        }
+
+        private Source<E> merge(final List<Run<E>> runs) {
+            final List<RunReader<E>> readers = new ArrayList<RunReader<E>>(runs.size());
+            try {
+                for (final Run<E> run : runs) {
+                    readers.add(new RunReader<E>(run));
+                }
+            } catch (final RuntimeException e) {
+                for (final RunReader<E> reader : readers) {
+                    reader.cancel();
+                }
+                throw e;
+            }
+            return new MergeSource<E>(readers, ExternalSort.this.comparator);
+        }
+    }
+
+    private static <E> void delete(final List<Run<E>> runs) {
+        for (final Run<E> run : runs) {
+            run.file.delete();
+        }
+    }
+
+    /**
+     * Sorted sequence of elements stored in a temporary file.
+     */
+    private static final class Run<E> {
+        private final File file;
+        private final Codec<E> codec;
+        private final long count;
+
+        private Run(final File file, final Codec<E> codec, final long count) {
+            this.file = file;
+            this.codec = codec;
+            this.count = count;
+        }
+    }
+
+    private static final class RunWriter<E> {
+        private final Codec<E> codec;
+        private final File file;
+        private final DataOutputStream out;
+        private long count;
+
+        private RunWriter(final Codec<E> codec) {
+            this.codec = codec;
+            try {
+                this.file = File.createTempFile("smooth-sort-", ".run");
+            } catch (final IOException e) {
+                throw new IterIOException("Failed to create temporary file for sorted run", e);
+            }
+            try {
+                this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+            } catch (final IOException e) {
+                this.file.delete();
+                throw new IterIOException("Failed to create temporary file for sorted run", e);
+            }
+        }
+
+        void write(final E value) {
+            try {
+                this.codec.write(value, this.out);
+                this.count += 1;
+            } catch (final IOException e) {
+                discard();
+                throw new IterIOException("Failed to write sorted run to " + this.file, e);
+            }
+        }
+
+        Run<E> finish() {
+            try {
+                this.out.close();
+            } catch (final IOException e) {
+                this.file.delete();
+                throw new IterIOException("Failed to write sorted run to " + this.file, e);
+            }
+            return new Run<E>(this.file, this.codec, this.count);
+        }
+
+        /**
+         * Closes the file without completing the run and deletes it.
+         */
+        void discard() {
+            try {
+                this.out.close();
+            } catch (final IOException ignored) {
+                // nothing can be done, the file is deleted anyway
+            }
+            this.file.delete();
+        }
+    }
+
+    /**
+     * Reads run one element at a time, deleting the file when the run is read completely or cancelled.
+     */
+    private static final class RunReader<E> extends Source<E> {
+        private final Run<E> run;
+        private final DataInputStream in;
+        private long remaining;
+
+        private RunReader(final Run<E> run) {
+            this.run = run;
+            this.remaining = run.count;
+            try {
+                this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file)));
+            } catch (final IOException e) {
+                throw new IterIOException("Failed to open sorted run " + run.file, e);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (0 == this.remaining) {
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                final E result = this.run.codec.read(this.in);
+                this.remaining -= 1;
+                return result;
+            } catch (final IOException e) {
+                close();
+                throw new IterIOException("Failed to read sorted run " + this.run.file, e);
+            }
+        }
+
+        @Override
+        long size() {
+            return this.remaining;
+        }
+
+        @Override
+        void cancel() {
+            close();
+        }
+
+        private void close() {
+            try {
+                this.in.close();
+            } catch (final IOException ignored) {
+                // nothing can be done, the file is deleted anyway
+            }
+            this.run.file.delete();
+        }
+    }
+}
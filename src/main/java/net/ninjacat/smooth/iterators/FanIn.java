@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>
+ * Source which reads several iterables concurrently and returns their elements in the order they arrive.
+ * </p><p>
+ * When the first element is requested, a task is submitted to the executor for every iterable. Tasks push elements
+ * into a shared {@link Handoff} queue, waiting while the queue is full. Source ends when all the tasks have finished.
+ * Exception thrown by any iterable is rethrown to the consumer, after which remaining tasks are cancelled. If
+ * consumer stops before reading all the elements or is abandoned, all the tasks are stopped.
+ * </p>
+ *
+ * @param <E> type of elements
+ */
+final class FanIn<E> extends Source<E> {
+    private final List<Iterable<E>> iterables;
+    private final ExecutorService executor;
+    private final Handoff<E> handoff;
+    private int running;
+    private Object head;
+
+    FanIn(final List<Iterable<E>> iterables, final ExecutorService executor, final int bufferSize) {
+        this.iterables = iterables;
+        this.executor = executor;
+        this.handoff = new Handoff<E>(this, bufferSize);
+        this.running = -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.running < 0) {
+            start();
+        }
+        while (null == this.head) {
+            final Object value = this.handoff.take();
+            if (Handoff.END == value) {
+                this.running -= 1;
+                if (0 == this.running) {
+                    this.head = Handoff.END;
+                }
+            } else {
+                this.head = value;
+            }
+        }
+        return Handoff.END != this.head;
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Object result = this.head;
+        this.head = null;
+        return this.handoff.unwrap(result);
+    }
+
+    /**
+     * Stops all the background tasks. Elements which are already in the queue are dropped.
+     */
+    @Override
+    void cancel() {
+        this.handoff.cancel();
+        this.head = Handoff.END;
+    }
+
+    private void start() {
+        this.running = this.iterables.size();
+        if (0 == this.running) {
+            this.head = Handoff.END;
+        }
+        for (final Iterable<E> iterable : this.iterables) {
+            this.handoff.submit(this.executor, iterable);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * Bounded queue which passes elements from producer tasks to a single consumer.
+ * </p><p>
+ * Each producer drains an iterable into the queue, waiting while the queue is full, and then puts {@link #END}
+ * marker. Exception thrown by an iterable is passed through the queue and rethrown to the consumer after all the
+ * elements read before it, after which all the producers are cancelled.
+ * </p><p>
+ * Producers stop when the queue is cancelled or when the consumer which owns the queue is garbage collected, so that
+ * a consumer which is abandoned before it is exhausted does not keep tasks waiting for free space forever. Producers
+ * never reference the owner strongly.
+ * </p>
+ *
+ * @param <E> type of elements
+ */
+final class Handoff<E> {
+    /**
+     * Marker put into the queue when a producer has finished
+     */
+    static final Object END = new Object();
+    private static final Object NULL = new Object();
+    private static final long LIVENESS_CHECK_MILLIS = 100;
+
+    private final BlockingQueue<Object> queue;
+    private final WeakReference<Object> owner;
+    private final List<Future<?>> tasks;
+    private volatile boolean cancelled;
+
+    /**
+     * @param owner      consumer reading the queue
+     * @param bufferSize maximum number of elements waiting in the queue
+     */
+    Handoff(final Object owner, final int bufferSize) {
+        this.queue = new ArrayBlockingQueue<Object>(bufferSize);
+        this.owner = new WeakReference<Object>(owner);
+        this.tasks = new ArrayList<Future<?>>();
+    }
+
+    /**
+     * Starts a producer task. Rich iterators are drained with their pipeline, other iterables are read with their
+     * iterator, which is created by the task.
+     *
+     * @param executor executor to run the task on
+     * @param iterable elements to put into the queue
+     */
+    void submit(final ExecutorService executor, final Iterable<E> iterable) {
+        this.tasks.add(executor.submit(new Producer(iterable)));
+    }
+
+    /**
+     * Waits for the next element. Exception thrown by a producer is rethrown unchanged.
+     *
+     * @return element as it was put into the queue, {@link #END} when a producer has finished or queue is cancelled
+     */
+    Object take() {
+        if (this.cancelled) {
+            return END;
+        }
+        final Object value;
+        try {
+            value = this.queue.take();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            throw new IllegalStateException("Interrupted while waiting for next element", e);
+        }
+        if (value instanceof Failure) {
+            cancel();
+            throw Handoff.<RuntimeException>rethrow(((Failure) value).error);
+        }
+        return value;
+    }
+
+    /**
+     * @param value element returned by {@link #take()}
+     * @return element as it was read by a producer
+     */
+    @SuppressWarnings("unchecked")
+    E unwrap(final Object value) {
+        return NULL == value ? null : (E) value;
+    }
+
+    /**
+     * Stops all the producers. Elements which are already in the queue are dropped.
+     */
+    void cancel() {
+        this.cancelled = true;
+        for (final Future<?> task : this.tasks) {
+            task.cancel(true);
+        }
+        this.queue.clear();
+    }
+
+    private boolean isActive() {
+        return !this.cancelled && null != this.owner.get();
+    }
+
+    private void put(final Object value) {
+        try {
+            while (!this.queue.offer(value, LIVENESS_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!isActive()) {
+                    throw new Stopped();
+                }
+            }
+        } catch (final InterruptedException e) {
+            throw new Stopped();
+        }
+    }
+
+    /**
+     * Throws any exception without declaring it, so that checked exceptions sneaked through iterators reach the
+     * consumer unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> T rethrow(final Throwable error) throws T {
+        throw (T) error;
+    }
+
+    private static final class Failure {
+        private final Throwable error;
+
+        private Failure(final Throwable error) {
+            this.error = error;
+        }
+    }
+
+    private final class Producer implements Runnable {
+        private final Iterable<E> iterable;
+
+        private Producer(final Iterable<E> iterable) {
+            this.iterable = iterable;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final Iter<E> upstream = this.iterable instanceof Iter
+                        ? (Iter<E>) this.iterable : Iter.of(this.iterable.iterator());
+                upstream.drain(new Sink<E>() {
+                    @Override
+                    boolean accept(final E value) {
+                        put(null == value ? NULL : value);
+                        return isActive();
+                    }
+                });
+                put(END);
+            } catch (final Stopped ignored) {
+                // consumer has cancelled or abandoned the queue
+            } catch (final Throwable error) {
+                try {
+                    put(new Failure(error));
+                } catch (final Stopped ignored) {
+                    // consumer has cancelled or abandoned the queue
+                }
+            }
+        }
+    }
+
+    /**
+     * Unwinds producer stack when consumer has cancelled or abandoned the queue while producer waits for free space.
+     */
+    private static final class Stopped extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Function2;
+import net.ninjacat.smooth.utils.Pair;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Source which groups elements of a rich iterator by key and folds elements of each group, when results are
+ * requested for the first time.
+ * </p><p>
+ * Partial results are kept in an open addressing hash table. When number of keys in the table reaches memory budget,
+ * the table is split by key hash into {@value #PARTITIONS} partitions, which are appended to temporary files, and
+ * the table is cleared. After all the elements were read, partitions are loaded one by one and partial results for
+ * the same key are combined. A partition which still does not fit into memory is split again using other bits of
+ * key hash.
+ * </p><p>
+ * Temporary files are deleted as soon as they are loaded, when the consumer stops early or when aggregation fails.
+ * </p>
+ *
+ * @param <E> type of elements
+ * @param <K> type of keys
+ * @param <R> type of results
+ */
+final class HashAggregate<E, K, R> extends Source<Pair<K, R>> {
+    /**
+     * Number of partitions table is split into when it is spilled
+     */
+    static final int PARTITIONS = 16;
+    private static final int PARTITION_BITS = 4;
+    private static final int MAX_LEVEL = 32 / PARTITION_BITS - 1;
+
+    private final Iter<E> upstream;
+    private final Func<K, E> keyFunc;
+    private final R initial;
+    private final Function2<R, R, E> fold;
+    private final Function2<R, R, R> combine;
+    private final int memoryBudget;
+    private final Codec<K> keyCodec;
+    private final Codec<R> valueCodec;
+
+    private final Deque<Partition> pending = new ArrayDeque<Partition>();
+    private Table table;
+    private int position;
+    private boolean started;
+
+    /**
+     * @param upstream     elements to aggregate
+     * @param keyFunc      function calculating key of an element
+     * @param initial      initial value of result for each key
+     * @param fold         function folding element into result
+     * @param combine      function combining two partial results, may be {@code null} if budget is unlimited
+     * @param memoryBudget maximum number of keys kept in memory
+     * @param keyCodec     codec to write keys to temporary files, may be {@code null} if budget is unlimited
+     * @param valueCodec   codec to write partial results to temporary files, may be {@code null} if budget
+     *                     is unlimited
+     */
+    HashAggregate(final Iter<E> upstream, final Func<K, E> keyFunc, final R initial, final Function2<R, R, E> fold,
+                  final Function2<R, R, R> combine, final int memoryBudget,
+                  final Codec<K> keyCodec, final Codec<R> valueCodec) {
+        this.upstream = upstream;
+        this.keyFunc = keyFunc;
+        this.initial = initial;
+        this.fold = fold;
+        this.combine = combine;
+        this.memoryBudget = memoryBudget;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (!this.started) {
+                this.started = true;
+                aggregate();
+            }
+            while (!this.table.seek(this.position)) {
+                if (this.pending.isEmpty()) {
+                    return false;
+                }
+                load(this.pending.pop());
+            }
+            return true;
+        } catch (final RuntimeException e) {
+            cancel();
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Pair<K, R> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        this.position = this.table.next;
+        final int slot = this.position++;
+        return Pair.of((K) Table.unmask(this.table.keys[slot]), (R) this.table.values[slot]);
+    }
+
+    /**
+     * Deletes partitions which were not loaded yet.
+     */
+    @Override
+    void cancel() {
+        while (!this.pending.isEmpty()) {
+            this.pending.pop().delete(null);
+        }
+    }
+
+    /**
+     * Reads all the elements of upstream, folding them into the table.
+     */
+    private void aggregate() {
+        this.table = new Table();
+        final Spill spill = new Spill(0);
+        try {
+            readUpstream(spill);
+            finish(spill, this.table);
+        } catch (final RuntimeException e) {
+            spill.discard();
+            throw e;
+        }
+    }
+
+    private void readUpstream(final Spill spill) {
+        this.upstream.drain(new Sink<E>() {
+            @SuppressWarnings("unchecked")
+            @Override
+            boolean accept(final E value) {
+                final Table current = HashAggregate.this.table;
+                final Object key = Table.mask(HashAggregate.this.keyFunc.apply(value));
+                final int slot = current.find(key);
+                if (current.isFree(slot)) {
+                    if (current.size == HashAggregate.this.memoryBudget) {
+                        spill.write(current);
+                        current.clear();
+                        current.put(current.find(key), key, HashAggregate.this.fold.apply(HashAggregate.this.initial, value));
+                    } else {
+                        current.put(slot, key, HashAggregate.this.fold.apply(HashAggregate.this.initial, value));
+                    }
+                } else {
+                    current.values[slot] = HashAggregate.this.fold.apply((R) current.values[slot], value);
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Loads spilled partition into the table, combining partial results of the same key.
+     */
+    @SuppressWarnings("unchecked")
+    private void load(final Partition partition) {
+        this.table.clear();
+        this.position = 0;
+        final Spill spill = new Spill(partition.level + 1);
+        final DataInputStream in = partition.open();
+        try {
+            for (long i = 0; i < partition.count; i++) {
+                final Object key = in.readBoolean() ? Table.mask(null) : this.keyCodec.read(in);
+                final R value = this.valueCodec.read(in);
+                final int slot = this.table.find(key);
+                if (!this.table.isFree(slot)) {
+                    this.table.values[slot] = this.combine.apply((R) this.table.values[slot], value);
+                } else if (this.table.size == this.memoryBudget && partition.level < MAX_LEVEL) {
+                    spill.write(this.table);
+                    this.table.clear();
+                    this.table.put(this.table.find(key), key, value);
+                } else {
+                    this.table.put(slot, key, value);
+                }
+            }
+            finish(spill, this.table);
+        } catch (final IOException e) {
+            spill.discard();
+            throw new IterIOException("Failed to read spilled partition " + partition.file, e);
+        } catch (final RuntimeException e) {
+            spill.discard();
+            throw e;
+        } finally {
+            partition.delete(in);
+        }
+    }
+
+    /**
+     * If anything was spilled, the rest of the table is spilled too, so that all partial results for a key end up
+     * in the same partition.
+     */
+    private void finish(final Spill spill, final Table current) {
+        if (spill.isEmpty()) {
+            return;
+        }
+        spill.write(current);
+        current.clear();
+        spill.close();
+        for (int i = spill.partitions.length - 1; i >= 0; i--) {
+            if (spill.partitions[i].count > 0) {
+                this.pending.push(spill.partitions[i]);
+            } else {
+                spill.partitions[i].delete(null);
+            }
+        }
+    }
+
+    /**
+     * Set of partition files of one level of splitting.
+     */
+    private final class Spill {
+        private final int level;
+        private Partition[] partitions;
+
+        private Spill(final int level) {
+            this.level = level;
+        }
+
+        boolean isEmpty() {
+            return null == this.partitions;
+        }
+
+        @SuppressWarnings("unchecked")
+        void write(final Table current) {
+            if (null == this.partitions) {
+                this.partitions = newPartitions();
+            }
+            for (int slot = 0; slot < current.keys.length; slot++) {
+                final Object key = current.keys[slot];
+                if (null != key) {
+                    // highest bits first, table finds slots by lowest bits, which must not be the same within partition
+                    final int partition = (Table.hash(key) >>> (32 - PARTITION_BITS * (this.level + 1))) & (PARTITIONS - 1);
+                    this.partitions[partition].write((K) Table.unmask(key), (R) current.values[slot]);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Partition[] newPartitions() {
+            final Partition[] result = (Partition[]) new HashAggregate<?, ?, ?>.Partition[PARTITIONS];
+            try {
+                for (int i = 0; i < PARTITIONS; i++) {
+                    result[i] = new Partition(this.level);
+                }
+            } catch (final RuntimeException e) {
+                for (final Partition partition : result) {
+                    if (null != partition) {
+                        partition.delete(partition.out);
+                    }
+                }
+                throw e;
+            }
+            return result;
+        }
+
+        void close() {
+            for (final Partition partition : this.partitions) {
+                partition.close();
+            }
+        }
+
+        /**
+         * Closes and deletes all the partitions, after aggregation has failed.
+         */
+        void discard() {
+            if (null != this.partitions) {
+                for (final Partition partition : this.partitions) {
+                    partition.delete(partition.out);
+                }
+            }
+        }
+    }
+
+    /**
+     * Temporary file containing pairs of keys and partial results.
+     */
+    private final class Partition {
+        private final int level;
+        private final File file;
+        private DataOutputStream out;
+        private long count;
+
+        private Partition(final int level) {
+            this.level = level;
+            try {
+                this.file = File.createTempFile("smooth-aggregate-", ".part");
+            } catch (final IOException e) {
+                throw new IterIOException("Failed to create temporary file for spilled partition", e);
+            }
+            try {
+                this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+            } catch (final IOException e) {
+                this.file.delete();
+                throw new IterIOException("Failed to create temporary file for spilled partition", e);
+            }
+        }
+
+        void write(final K key, final R value) {
+            try {
+                this.out.writeBoolean(null == key);
+                if (null != key) {
+                    HashAggregate.this.keyCodec.write(key, this.out);
+                }
+                HashAggregate.this.valueCodec.write(value, this.out);
+                this.count += 1;
+            } catch (final IOException e) {
+                delete(this.out);
+                throw new IterIOException("Failed to write spilled partition " + this.file, e);
+            }
+        }
+
+        void close() {
+            try {
+                this.out.close();
+            } catch (final IOException e) {
+                this.file.delete();
+                throw new IterIOException("Failed to write spilled partition " + this.file, e);
+            }
+        }
+
+        DataInputStream open() {
+            try {
+                return new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            } catch (final IOException e) {
+                throw new IterIOException("Failed to open spilled partition " + this.file, e);
+            }
+        }
+
+        void delete(final Closeable in) {
+            if (null != in) {
+                try {
+                    in.close();
+                } catch (final IOException ignored) {
+                    // nothing can be done, the file is deleted anyway
+                }
+            }
+            this.file.delete();
+        }
+    }
+
+    /**
+     * Hash table with linear probing. Keys and values are kept in parallel arrays, {@code null} key is replaced
+     * with a marker, so that {@code null} means a free slot.
+     */
+    private static final class Table {
+        private static final Object NULL_KEY = new Object();
+        private static final int MIN_CAPACITY = 16;
+
+        private Object[] keys;
+        private Object[] values;
+        private int size;
+        private int next;
+
+        private Table() {
+            allocate(MIN_CAPACITY);
+        }
+
+        static Object mask(final Object key) {
+            return null == key ? NULL_KEY : key;
+        }
+
+        static Object unmask(final Object key) {
+            return NULL_KEY == key ? null : key;
+        }
+
+        static int hash(final Object key) {
+            final int h = key.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * @return slot containing the key or a free slot where it should be put
+         */
+        int find(final Object key) {
+            final int mask = this.keys.length - 1;
+            int slot = hash(key) & mask;
+            while (null != this.keys[slot] && !this.keys[slot].equals(key)) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        boolean isFree(final int slot) {
+            return null == this.keys[slot];
+        }
+
+        void put(final int slot, final Object key, final Object value) {
+            this.keys[slot] = key;
+            this.values[slot] = value;
+            this.size += 1;
+            if (this.size * 2 > this.keys.length) {
+                rehash();
+            }
+        }
+
+        /**
+         * Finds the first occupied slot starting at specified one and stores it into {@link #next}.
+         *
+         * @return {@code true} if occupied slot was found
+         */
+        boolean seek(final int from) {
+            for (int slot = from; slot < this.keys.length; slot++) {
+                if (null != this.keys[slot]) {
+                    this.next = slot;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Removes all the entries, keeping the capacity for reuse.
+         */
+        void clear() {
+            Arrays.fill(this.keys, null);
+            Arrays.fill(this.values, null);
+            this.size = 0;
+        }
+
+        private void rehash() {
+            final Object[] oldKeys = this.keys;
+            final Object[] oldValues = this.values;
+            allocate(oldKeys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (null != oldKeys[i]) {
+                    final int slot = find(oldKeys[i]);
+                    this.keys[slot] = oldKeys[i];
+                    this.values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private void allocate(final int capacity) {
+            this.keys = new Object[capacity];
+            this.values = new Object[capacity];
+        }
+    }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.IntFunc;
+import net.ninjacat.smooth.functions.IntPredicate;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Functional style rich iterator over primitive {@code int} values</p>
+ * <p>
+ * Works similar to {@link Iter}, but elements are never boxed, which makes it suitable for numeric aggregation over
+ * large amounts of data. Operations {@link #map(IntFunc)} and {@link #filter(IntPredicate)} are recorded as stages of
+ * a pipeline and applied to each element in a single loop when terminal operation is called.
+ * </p>
+ * <p>Use {@link #boxed()} to continue processing with generic {@link Iter}</p>
+ */
+public class IntIter {
+    private static final IntStage[] NO_STAGES = new IntStage[0];
+
+    private final IntSource source;
+    private final IntStage[] stages;
+    private final boolean sized;
+
+    private IntIter(final IntSource source, final IntStage[] stages, final boolean sized) {
+        this.source = source;
+        this.stages = stages;
+        this.sized = sized;
+    }
+
+    /**
+     * Creates rich iterator over array of {@code int}s. Array is not copied.
+     *
+     * @param data array or varargs
+     * @return Primitive rich iterator
+     */
+    public static IntIter of(final int... data) {
+        return new IntIter(new ArraySource(data), NO_STAGES, true);
+    }
+
+    /**
+     * Creates rich iterator which returns {@code int}s in range [from; to) without boxing them
+     *
+     * @param from starting value
+     * @param to   upper bound
+     * @return Primitive rich iterator
+     * @see IntRange
+     */
+    public static IntIter range(final int from, final int to) {
+        return IntRange.of(from, to).ints();
+    }
+
+    static IntIter range(final int first, final int step, final long count) {
+        return new IntIter(new RangeSource(first, step, count), NO_STAGES, true);
+    }
+
+    /**
+     * Maps all the values to other values using supplied function. Transformation is applied lazily.
+     *
+     * @param func mapping function
+     * @return Primitive rich iterator of mapped values
+     */
+    public IntIter map(final IntFunc func) {
+        return then(this.sized, new IntStage() {
+            @Override
+            IntSink wrap(final IntSink downstream) {
+                return new IntSink() {
+                    @Override
+                    boolean accept(final int value) {
+                        return downstream.accept(func.apply(value));
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * Filters out values which do not match predicate. Predicate is applied lazily.
+     *
+     * @param predicate function to verify element, should return {@code true} for elements to keep
+     * @return Primitive rich iterator of matching values
+     */
+    public IntIter filter(final IntPredicate predicate) {
+        return then(false, new IntStage() {
+            @Override
+            IntSink wrap(final IntSink downstream) {
+                return new IntSink() {
+                    @Override
+                    boolean accept(final int value) {
+                        return !predicate.matches(value) || downstream.accept(value);
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * @return Sum of all the elements as {@code long}, so that it does not overflow
+     */
+    public long sum() {
+        final Sum sum = new Sum();
+        drain(sum);
+        return sum.result;
+    }
+
+    /**
+     * @return Number of elements
+     */
+    public long count() {
+        final Count count = new Count();
+        drain(count);
+        return count.result;
+    }
+
+    /**
+     * @return Smallest element
+     * @throws NoSuchElementException if iterator is empty
+     */
+    public int min() {
+        final Extremum min = new Extremum(false);
+        drain(min);
+        return min.get();
+    }
+
+    /**
+     * @return Largest element
+     * @throws NoSuchElementException if iterator is empty
+     */
+    public int max() {
+        final Extremum max = new Extremum(true);
+        drain(max);
+        return max.get();
+    }
+
+    /**
+     * Collects all the elements into a new array. If number of elements is known, array is allocated once. If only
+     * upper bound is known, array never grows beyond it.
+     *
+     * @return array of elements
+     */
+    public int[] toArray() {
+        final long bound = this.source.size();
+        final long exact = this.sized ? bound : -1;
+        final ToArray collector = new ToArray(0 <= exact && exact < Integer.MAX_VALUE ? (int) exact : 16, bound);
+        drain(collector);
+        return collector.get();
+    }
+
+    /**
+     * Converts this iterator into generic rich iterator of boxed values. Values are boxed one at a time when
+     * they are requested.
+     *
+     * @return Rich iterator of {@link Integer} values
+     */
+    public Iter<Integer> boxed() {
+        return Iter.of(new BoxedSource());
+    }
+
+    private IntIter then(final boolean keepsSize, final IntStage stage) {
+        final IntStage[] result = Arrays.copyOf(this.stages, this.stages.length + 1);
+        result[this.stages.length] = stage;
+        return new IntIter(this.source, result, keepsSize);
+    }
+
+    private IntSink pipeline(final IntSink terminal) {
+        IntSink sink = terminal;
+        for (int i = this.stages.length - 1; i >= 0; i--) {
+            sink = this.stages[i].wrap(sink);
+        }
+        return sink;
+    }
+
+    private boolean drain(final IntSink sink) {
+        return this.source.drainTo(pipeline(sink));
+    }
+
+    /**
+     * Receiver of primitive elements
+     */
+    private abstract static class IntSink {
+        abstract boolean accept(int value);
+    }
+
+    /**
+     * Single intermediate operation of the pipeline
+     */
+    private abstract static class IntStage {
+        abstract IntSink wrap(IntSink downstream);
+    }
+
+    /**
+     * Source of primitive elements which can be read one by one or pushed into a sink
+     */
+    private abstract static class IntSource {
+        abstract boolean hasNext();
+
+        abstract int next();
+
+        abstract boolean drainTo(IntSink sink);
+
+        abstract long size();
+    }
+
+    private static final class ArraySource extends IntSource {
+        private final int[] data;
+        private int position;
+
+        private ArraySource(final int[] data) {
+            this.data = data;
+            this.position = 0;
+        }
+
+        @Override
+        boolean hasNext() {
+            return this.position < this.data.length;
+        }
+
+        @Override
+        int next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.data[this.position++];
+        }
+
+        @Override
+        boolean drainTo(final IntSink sink) {
+            final int[] array = this.data;
+            for (int i = this.position; i < array.length; i++) {
+                if (!sink.accept(array[i])) {
+                    this.position = i + 1;
+                    return false;
+                }
+            }
+            this.position = array.length;
+            return true;
+        }
+
+        @Override
+        long size() {
+            return this.data.length - this.position;
+        }
+    }
+
+    private static final class RangeSource extends IntSource {
+        private final int step;
+        private int position;
+        private long remaining;
+
+        private RangeSource(final int first, final int step, final long count) {
+            this.position = first;
+            this.step = step;
+            this.remaining = count;
+        }
+
+        @Override
+        boolean hasNext() {
+            return this.remaining > 0;
+        }
+
+        @Override
+        int next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final int result = this.position;
+            this.position += this.step;
+            this.remaining -= 1;
+            return result;
+        }
+
+        @Override
+        boolean drainTo(final IntSink sink) {
+            final int delta = this.step;
+            int value = this.position;
+            long left = this.remaining;
+            while (left > 0) {
+                final int current = value;
+                value += delta;
+                left -= 1;
+                if (!sink.accept(current)) {
+                    this.position = value;
+                    this.remaining = left;
+                    return false;
+                }
+            }
+            this.position = value;
+            this.remaining = 0;
+            return true;
+        }
+
+        @Override
+        long size() {
+            return this.remaining;
+        }
+    }
+
+    private static final class Sum extends IntSink {
+        private long result;
+
+        @Override
+        boolean accept(final int value) {
+            this.result += value;
+            return true;
+        }
+    }
+
+    private static final class Count extends IntSink {
+        private long result;
+
+        @Override
+        boolean accept(final int value) {
+            this.result += 1;
+            return true;
+        }
+    }
+
+    private static final class Extremum extends IntSink {
+        private final boolean largest;
+        private boolean found;
+        private int result;
+
+        private Extremum(final boolean largest) {
+            this.largest = largest;
+        }
+
+        @Override
+        boolean accept(final int value) {
+            if (!this.found || (this.largest ? value > this.result : value < this.result)) {
+                this.result = value;
+                this.found = true;
+            }
+            return true;
+        }
+
+        private int get() {
+            if (!this.found) {
+                throw new NoSuchElementException("Iterator is empty");
+            }
+            return this.result;
+        }
+    }
+
+    private static final class ToArray extends IntSink {
+        private final long bound;
+        private int[] buffer;
+        private int size;
+
+        private ToArray(final int capacity, final long bound) {
+            this.buffer = new int[capacity];
+            this.bound = bound;
+        }
+
+        @Override
+        boolean accept(final int value) {
+            if (this.size == this.buffer.length) {
+                final int next = Math.max(16, this.size * 2);
+                this.buffer = Arrays.copyOf(this.buffer, this.bound > this.size ? (int) Math.min(next, this.bound) : next);
+            }
+            this.buffer[this.size++] = value;
+            return true;
+        }
+
+        private int[] get() {
+            return this.size == this.buffer.length ? this.buffer : Arrays.copyOf(this.buffer, this.size);
+        }
+    }
+
+    /**
+     * Generic source which boxes values coming out of the primitive pipeline
+     */
+    private final class BoxedSource extends Source<Integer> {
+        private final IntSink pull;
+        private boolean buffered;
+        private boolean stopped;
+        private int nextValue;
+
+        private BoxedSource() {
+            this.pull = pipeline(new IntSink() {
+                @Override
+                boolean accept(final int value) {
+                    BoxedSource.this.nextValue = value;
+                    BoxedSource.this.buffered = true;
+                    return true;
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!this.buffered && !this.stopped && IntIter.this.source.hasNext()) {
+                this.stopped = !this.pull.accept(IntIter.this.source.next());
+            }
+            return this.buffered;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.buffered = false;
+            return this.nextValue;
+        }
+
+        @Override
+        boolean drainTo(final Sink<? super Integer> sink) {
+            if (this.buffered) {
+                this.buffered = false;
+                if (!sink.accept(this.nextValue)) {
+                    return false;
+                }
+            }
+            if (this.stopped) {
+                return true;
+            }
+            return drain(new IntSink() {
+                @Override
+                boolean accept(final int value) {
+                    return sink.accept(value);
+                }
+            });
+        }
+
+        @Override
+        long size() {
+            return IntIter.this.sized && !this.buffered && !this.stopped ? IntIter.this.source.size() : UNKNOWN_SIZE;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.utils.Pair;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Immutable arithmetic progression of {@code int} values, defined by the first value, the step and the number
+ * of values.
+ * </p><p>
+ * Range knows its size, so {@link #count()}, {@link #get(long)}, {@link #contains(int)}, {@link #skip(long)},
+ * {@link #limit(long)} and {@link #split()} do not iterate the values and take constant time. Rich iterators
+ * created from a range keep this knowledge and can be split for parallel processing.
+ * </p>
+ */
+public final class IntRange implements Iterable<Integer> {
+    private final int first;
+    private final int step;
+    private final long count;
+
+    private IntRange(final int first, final int step, final long count) {
+        this.first = first;
+        this.step = step;
+        this.count = count;
+    }
+
+    /**
+     * Creates range of values in [from; to) with step 1
+     *
+     * @param from starting value
+     * @param to   upper bound, not included
+     * @return new range
+     */
+    public static IntRange of(final int from, final int to) {
+        return of(from, to, 1);
+    }
+
+    /**
+     * Creates range of values starting with {@code from} and changing by {@code step} until {@code to} is reached.
+     * Upper bound is never included. Step can be negative, in that case values will be decreasing.
+     *
+     * @param from starting value
+     * @param to   bound, not included
+     * @param step difference between two consecutive values, must not be zero
+     * @return new range
+     * @throws IllegalArgumentException if step is zero
+     */
+    public static IntRange of(final int from, final int to, final int step) {
+        if (0 == step) {
+            throw new IllegalArgumentException("Range step must not be zero");
+        }
+        if (step > 0 ? from >= to : from <= to) {
+            return new IntRange(from, step, 0);
+        }
+        final long distance = step > 0 ? (long) to - from : (long) from - to;
+        final long stride = step > 0 ? step : -(long) step;
+        return new IntRange(from, step, (distance - 1) / stride + 1);
+    }
+
+    /**
+     * @return first value of the range
+     */
+    public int getFirst() {
+        return this.first;
+    }
+
+    /**
+     * @return difference between two consecutive values
+     */
+    public int getStep() {
+        return this.step;
+    }
+
+    /**
+     * @return number of values in the range
+     */
+    public long count() {
+        return this.count;
+    }
+
+    /**
+     * @return {@code true} if range does not contain any values
+     */
+    public boolean isEmpty() {
+        return 0 == this.count;
+    }
+
+    /**
+     * Returns value at specified position.
+     *
+     * @param index position of the value, starting with zero
+     * @return value at position
+     * @throws IndexOutOfBoundsException if index is negative or not less than {@link #count()}
+     */
+    public int get(final long index) {
+        if (index < 0 || index >= this.count) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of range of size " + this.count);
+        }
+        return valueAt(index);
+    }
+
+    /**
+     * Checks if value belongs to this range.
+     *
+     * @param value value to check
+     * @return {@code true} if iterating the range would return the value
+     */
+    public boolean contains(final int value) {
+        if (0 == this.count) {
+            return false;
+        }
+        final int last = valueAt(this.count - 1);
+        final boolean inBounds = this.step > 0 ? value >= this.first && value <= last : value <= this.first && value >= last;
+        return inBounds && 0 == ((long) value - this.first) % this.step;
+    }
+
+    /**
+     * Creates range without first {@code n} values.
+     *
+     * @param n number of values to skip
+     * @return new range
+     * @throws IllegalArgumentException if n is negative
+     */
+    public IntRange skip(final long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Cannot skip negative number of values");
+        }
+        if (n >= this.count) {
+            return new IntRange(this.first, this.step, 0);
+        }
+        return new IntRange(valueAt(n), this.step, this.count - n);
+    }
+
+    /**
+     * Creates range which contains at most first {@code n} values of this range.
+     *
+     * @param n maximum number of values
+     * @return new range
+     * @throws IllegalArgumentException if n is negative
+     */
+    public IntRange limit(final long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Cannot limit range to negative number of values");
+        }
+        return n >= this.count ? this : new IntRange(this.first, this.step, n);
+    }
+
+    /**
+     * Splits range into two halves. If number of values is odd, second half will be larger.
+     *
+     * @return pair of ranges, left one containing first half of values and right one the rest of them
+     */
+    public Pair<IntRange, IntRange> split() {
+        final long half = this.count / 2;
+        return Pair.of(limit(half), skip(half));
+    }
+
+    /**
+     * @return rich iterator over the values of this range
+     */
+    public Iter<Integer> iter() {
+        return Iter.of(iterator());
+    }
+
+    /**
+     * @return primitive rich iterator over the values of this range, values are not boxed
+     */
+    public IntIter ints() {
+        return IntIter.range(this.first, this.step, this.count);
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new RangeSource(this.first, this.step, this.count);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (null == o || getClass() != o.getClass()) return false;
+
+        final IntRange range = (IntRange) o;
+
+        if (0 == this.count || 0 == range.count) return this.count == range.count;
+        return this.first == range.first && this.step == range.step && this.count == range.count;
+    }
+
+    @Override
+    public int hashCode() {
+        if (0 == this.count) {
+            return 0;
+        }
+        int result = this.first;
+        result = 31 * result + this.step;
+        result = 31 * result + (int) (this.count ^ (this.count >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "IntRange{first=" + this.first + ", step=" + this.step + ", count=" + this.count + '}';
+    }
+
+    private int valueAt(final long index) {
+        return (int) (this.first + index * this.step);
+    }
+
+    /**
+     * Source which generates values of the range and can be split without iterating
+     */
+    private static final class RangeSource extends Source<Integer> {
+        private final int step;
+        private int position;
+        private long remaining;
+
+        private RangeSource(final int first, final int step, final long count) {
+            this.position = first;
+            this.step = step;
+            this.remaining = count;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.remaining > 0;
+        }
+
+        @Override
+        public Integer next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final int result = this.position;
+            this.position += this.step;
+            this.remaining -= 1;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("ranges does not support remove()");
+        }
+
+        @Override
+        long size() {
+            return this.remaining;
+        }
+
+        @Override
+        long skip(final long n) {
+            final long skipped = Math.min(n, this.remaining);
+            this.position = (int) (this.position + skipped * this.step);
+            this.remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        Source<Integer> trySplit() {
+            final long half = this.remaining / 2;
+            if (0 == half) {
+                return null;
+            }
+            final Source<Integer> prefix = new RangeSource(this.position, this.step, half);
+            this.position = (int) (this.position + half * this.step);
+            this.remaining -= half;
+            return prefix;
+        }
+
+        @Override
+        boolean drainTo(final Sink<? super Integer> sink) {
+            final int delta = this.step;
+            int value = this.position;
+            long left = this.remaining;
+            while (left > 0) {
+                final int current = value;
+                value += delta;
+                left -= 1;
+                if (!sink.accept(current)) {
+                    this.position = value;
+                    this.remaining = left;
+                    return false;
+                }
+            }
+            this.position = value;
+            this.remaining = 0;
+            return true;
+        }
+    }
+}
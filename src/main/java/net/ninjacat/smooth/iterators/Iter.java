@@ -19,9 +19,12 @@ package net.ninjacat.smooth.iterators;
 import net.ninjacat.smooth.collections.Collect;
 import net.ninjacat.smooth.collections.Maps;
 import net.ninjacat.smooth.functions.*;
+import net.ninjacat.smooth.utils.Pair;
 
 import java.lang.reflect.Array;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * <p>Functional style immutable rich iterator</p>
@@ -33,15 +36,26 @@ import java.util.*;
  * <p></p>
  * <p>This is essentially a rich wrapper around {@link Iterator} over collection. Standard limitations of iterators apply,
  * like restriction of changing collection during iteration</p>
+ * <p>Intermediate operations like {@link #map(Func)} and {@link #filter(Predicate)} do not wrap iterators into each other,
+ * they are recorded as stages of a pipeline. When terminal operation is called the source pushes its elements through
+ * the sinks of all the stages within a single loop. Arrays and random access lists are read by index.</p>
  *
  * @param <E> Type of the elements in the iterator
  */
 @SuppressWarnings("ClassNamingConvention")
 public class Iter<E> implements Iterable<E> {
-    private final Iterator<E> iterator;
+    private final Source<?> source;
+    private final Stage[] stages;
+    private Iterator<E> iterator;
 
     Iter(final Iterator<E> iterator) {
-        this.iterator = iterator;
+        this(Source.of(iterator), Stage.NONE);
+    }
+
+    private Iter(final Source<?> source, final Stage[] stages) {
+        this.source = source;
+        this.stages = stages;
+        this.iterator = null;
     }
 
     public static <E> Iter<E> of(final Enumeration<E> enumeration) {
@@ -57,7 +71,7 @@ public class Iter<E> implements Iterable<E> {
      * @return Rich iterator over collection elements
      */
     public static <E> Iter<E> of(final Collection<E> coll) {
-        return new Iter<E>(coll.iterator());
+        return new Iter<E>(Source.of(coll), Stage.NONE);
     }
 
     /**
@@ -80,7 +94,7 @@ public class Iter<E> implements Iterable<E> {
      * Creates rich iterator wrapper around array of elements
      * </p>
      * <p>
-     * This iterator is created over copy of the array, so original array can be used or disposed of.
+     * Changes to the array made before iteration completes will be visible to this iterator.
      * </p>
      *
      * @param data the array
@@ -88,7 +102,7 @@ public class Iter<E> implements Iterable<E> {
      * @return Rich iterator for array elements
      */
     public static <E> Iter<E> of(final E... data) {
-        return Iter.of(Arrays.asList(data));
+        return new Iter<E>(new ArrayIterator<E>(data));
     }
 
     /**
@@ -99,21 +113,25 @@ public class Iter<E> implements Iterable<E> {
      * @return Rich iterator
      */
     public static <E> Iter<E> fromArray(final E[] data) {
-        return Iter.of(Arrays.asList(data));
+        return new Iter<E>(new ArrayIterator<E>(data));
     }
 
     /**
      * @return {@link List} containing all the items from this iterator. Returned list is immutable
      */
+    @SuppressWarnings("unchecked")
     public List<E> toList() {
-        return Collect.iteratorToList(this.iterator);
+        return Collections.unmodifiableList(Arrays.asList((E[]) collect(Object.class)));
     }
 
     /**
      * @return {@link Set} containing all the items from this iterator. Returned list is immutable
      */
     public Set<E> toSet() {
-        return Collect.iteratorToSet(this.iterator);
+        final long size = size(true);
+        final Set<E> set = size >= 0 ? new HashSet<E>((int) Math.min(Integer.MAX_VALUE, size * 4 / 3 + 1)) : new HashSet<E>();
+        drain(new Sink.ToCollection<E>(set));
+        return Collections.unmodifiableSet(set);
     }
 
 
@@ -133,8 +151,25 @@ public class Iter<E> implements Iterable<E> {
      *              a new array of the same runtime type is allocated for this purpose.
      * @return an array containing the elements of this iterable
      */
+    @SuppressWarnings("unchecked")
     public E[] toArray(final E[] array) {
-        return toList().toArray(array);
+        final long exact = size(true);
+        final E[] initial = exact >= 0 && exact <= array.length
+                ? array
+                : (E[]) Array.newInstance(array.getClass().getComponentType(), Sink.ToArray.initialCapacity(exact, size(false)));
+        final Sink.ToArray<E> collector = new Sink.ToArray<E>(initial, size(false));
+        drain(collector);
+        final int size = collector.size();
+        if (size > array.length) {
+            return collector.toArray();
+        }
+        if (collector.buffer() != array) {
+            System.arraycopy(collector.buffer(), 0, array, 0, size);
+        }
+        if (size < array.length) {
+            array[size] = null;
+        }
+        return array;
     }
 
     /**
@@ -153,40 +188,353 @@ public class Iter<E> implements Iterable<E> {
      * @return an array containing the elements of this iterable
      */
     public E[] toArray(final Class<E> arrayType) {
-        final List<E> list = toList();
-        @SuppressWarnings("unchecked") final E[] array = (E[]) Array.newInstance(arrayType, list.size());
-        list.toArray(array);
-        return array;
+        return collect(arrayType);
     }
 
     /**
      * <p>Maps all the values in the iterator to other values using supplied function.</p>
-     * <p>This function will not create new iterator, instead transformation function will be applied to
-     * the next original iterator's element during each call to {@link Iterator#next()} </p>
+     * <p>This function will not create new iterator, instead transformation function is recorded as a stage
+     * of the pipeline and will be applied to each element when it is requested</p>
      *
      * @param func mapping function
      * @param <R>  result type
      * @return Iterable iterator of mapped values
      */
     public <R> Iter<R> map(final Func<R, E> func) {
-        return new Iter<R>(
-                new Iterator<R>() {
+        return then(Stage.map(func));
+    }
 
-                    @Override
-                    public boolean hasNext() {
-                        return Iter.this.iterator.hasNext();
-                    }
+    /**
+     * <p>Replaces each element with all the elements of an {@link Iterable} produced by supplied function.</p>
+     * <p>Inner elements are passed down the pipeline directly, without collecting them first. Random access
+     * lists, including {@link Arrays#asList(Object[])}, and {@link ArrayIterable} are read by index, so no inner
+     * iterator is created. Stages of an inner {@link Iter} are executed as part of this pipeline.</p>
+     *
+     * @param func function producing elements for each element of this iterator
+     * @param <R>  type of resulting elements
+     * @return Iterator over elements of all produced iterables
+     */
+    public <R> Iter<R> flatMap(final Func<? extends Iterable<R>, E> func) {
+        return then(Stage.flatMap(func));
+    }
 
-                    @Override
-                    public R next() {
-                        return func.apply(Iter.this.iterator.next());
-                    }
+    /**
+     * <p>Combines each element with the element at the same position in another iterable. Resulting iterator
+     * stops as soon as either of them is exhausted.</p>
+     * <p>Combiner is applied to the elements directly, no intermediate pairs are created. Random access lists,
+     * {@link ArrayIterable}, {@link IntRange} and {@link LongRange} are read by index. Other iterable is read from
+     * the beginning by each terminal operation.</p>
+     *
+     * @param other    iterable to combine elements with
+     * @param combiner function combining element of this iterator with element of other iterable
+     * @param <T>      type of elements of other iterable
+     * @param <R>      type of resulting elements
+     * @return Iterator over combined elements
+     */
+    public <T, R> Iter<R> zipWith(final Iterable<T> other, final Func2<R, E, T> combiner) {
+        return then(Stage.zip(other, combiner));
+    }
 
-                    @Override
-                    public void remove() {
-                        throw new UnsupportedOperationException("Mapped rich iterators does not support remove()");
-                    }
-                });
+    /**
+     * <p>Combines each element with the elements at the same position in several other iterables. Resulting
+     * iterator stops as soon as any of them is exhausted.</p>
+     * <p>Combiner receives an array with element of this iterator at index 0, followed by elements of other
+     * iterables in order. The same array is passed on every call and must not be retained.
+     * See {@link #zipWith(Iterable, Func2)} for the way other iterables are read.</p>
+     *
+     * @param combiner function combining elements at the same position
+     * @param others   iterables to combine elements with
+     * @param <R>      type of resulting elements
+     * @return Iterator over combined elements
+     */
+    public <R> Iter<R> zipWith(final Func<R, Object[]> combiner, final Iterable<?>... others) {
+        return then(Stage.zip(others, combiner));
+    }
+
+    /**
+     * <p>Groups elements into batches of specified size. The last batch may contain fewer elements.</p>
+     * <p>Each batch is a new {@link List}. When number of elements is known in advance, the last batch
+     * is allocated with the exact size.</p>
+     *
+     * @param size maximum number of elements in a batch
+     * @return Iterator of batches
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public Iter<List<E>> batch(final int size) {
+        return batch(size, false);
+    }
+
+    /**
+     * <p>Groups elements into batches of specified size. The last batch may contain fewer elements.</p>
+     * <p>If {@code reuseBuffer} is {@code true} the same {@link List} instance is returned for every batch and
+     * its contents are replaced when the next element is requested from upstream. Each batch must be processed
+     * before moving to the next one and must not be retained, so this mode is suitable for
+     * {@link #forEach(Procedure)} or for reading batches one by one from {@link #iterator()}, but not
+     * for {@link #toList()}.</p>
+     *
+     * @param size        maximum number of elements in a batch
+     * @param reuseBuffer whether single list should be reused for all the batches
+     * @return Iterator of batches
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public Iter<List<E>> batch(final int size, final boolean reuseBuffer) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        return then(Stage.batch(size, reuseBuffer));
+    }
+
+    /**
+     * <p>Truncates this iterator to at most {@code n} elements.</p>
+     * <p>Iteration stops as soon as the last of the elements is produced, no more elements are pulled from
+     * the source.</p>
+     *
+     * @param n maximum number of elements
+     * @return Iterator over first {@code n} elements
+     * @throws IllegalArgumentException if n is negative
+     */
+    public Iter<E> limit(final long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Limit must not be negative");
+        }
+        if (0 == n) {
+            return new Iter<E>(Source.of(Collections.<E>emptyIterator()), Stage.NONE);
+        }
+        return then(Stage.limit(n));
+    }
+
+    /**
+     * <p>Discards first {@code n} elements of this iterator.</p>
+     * <p>If no other operations were applied to the iterator, elements are skipped directly in the source.
+     * Arrays, random access lists and ranges jump straight to the required position without reading skipped
+     * elements.</p>
+     *
+     * @param n number of elements to skip
+     * @return Iterator over remaining elements
+     * @throws IllegalArgumentException if n is negative
+     */
+    public Iter<E> skip(final long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Cannot skip negative number of elements");
+        }
+        if (0 == this.stages.length) {
+            return new Iter<E>(Source.skipping(this.source, n), Stage.NONE);
+        }
+        return then(Stage.skip(n));
+    }
+
+    /**
+     * Returns elements of this iterator while they match predicate. Iteration stops at the first element that
+     * does not match.
+     *
+     * @param predicate predicate to test elements
+     * @return Iterator over the longest prefix of matching elements
+     */
+    public Iter<E> takeWhile(final Predicate<E> predicate) {
+        return then(Stage.takeWhile(predicate));
+    }
+
+    /**
+     * Discards elements of this iterator while they match predicate. All the elements starting with the first one
+     * that does not match are returned.
+     *
+     * @param predicate predicate to test elements
+     * @return Iterator over remaining elements
+     */
+    public Iter<E> dropWhile(final Predicate<E> predicate) {
+        return then(Stage.dropWhile(predicate));
+    }
+
+    /**
+     * <p>Reads elements ahead in a background task, so that slow upstream, like network or disk reads, works
+     * concurrently with the consumer.</p>
+     * <p>When the first element is requested, a task is submitted to the executor, which pushes elements through
+     * the stages applied so far into a queue of {@code bufferSize} elements and waits while the queue is full.
+     * The task occupies one thread of the executor until upstream is exhausted. Operations applied after this one
+     * are executed by the consumer.</p>
+     * <p>Exception thrown by upstream is rethrown to the consumer after all the elements produced before it.
+     * If the consumer stops early, for example because of {@link #limit(long)} or {@link #find(Predicate, Object)},
+     * the task is cancelled. Task of an iterator which is abandoned before it is exhausted stops waiting for free
+     * space in the queue once the iterator is garbage collected.</p>
+     *
+     * @param executor   executor to run background task on
+     * @param bufferSize maximum number of elements read ahead
+     * @return Iterator over the same elements
+     * @throws IllegalArgumentException if buffer size is not positive
+     */
+    public Iter<E> prefetch(final ExecutorService executor, final int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        return new Iter<E>(new Prefetch<E>(this, executor, bufferSize), Stage.NONE);
+    }
+
+    /**
+     * <p>Splits this iterator into {@code count} independent iterators, each returning all the elements of this one,
+     * so that several results can be calculated in a single pass over an expensive source. Upstream is read once,
+     * this iterator must not be used after the call.</p>
+     * <p>Elements are kept in a shared buffer of {@code bufferSize} elements until every iterator has read them,
+     * so the buffer only holds elements the slowest iterator has not consumed yet. Iterator which gets ahead of
+     * the slowest one by {@code bufferSize} elements blocks until another thread reads the slower iterators, so
+     * iterators which diverge further than that must be read from different threads. Reading them one after another
+     * from a single thread blocks forever unless the whole source fits into the buffer. Iterators which are
+     * exhausted or stopped early, for example by {@link #limit(long)}, do not hold the buffer.</p>
+     * <p>Two results can be calculated in a single pass from a single thread with
+     * {@link #reduce(Object, Function2, Object, Function2)} instead.</p>
+     * <p>Exception thrown by upstream is rethrown to every iterator which reaches the failed element.</p>
+     *
+     * @param count      number of iterators
+     * @param bufferSize maximum number of elements kept for slower iterators
+     * @return List of iterators over the same elements
+     * @throws IllegalArgumentException if count or buffer size is not positive
+     */
+    public List<Iter<E>> tee(final int count, final int bufferSize) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Number of iterators must be positive");
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        final Tee<E> tee = new Tee<E>(iterator(), this.source, count, bufferSize);
+        final List<Iter<E>> result = new ArrayList<Iter<E>>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(new Iter<E>(tee.reader(i), Stage.NONE));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * <p>Sorts elements in memory using supplied comparator. Sort is stable.</p>
+     * <p>Sorting happens when the first element is requested, all the elements are read at that moment.</p>
+     *
+     * @param comparator comparator defining the order of elements
+     * @return Iterator over sorted elements
+     * @see #sorted(Comparator, int, Codec)
+     */
+    public Iter<E> sorted(final Comparator<? super E> comparator) {
+        return sorted(comparator, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * <p>Sorts elements keeping at most {@code memoryBudget} of them in memory. Elements which do not fit are
+     * written to temporary files using standard Java serialization, so they must be {@link java.io.Serializable}.</p>
+     *
+     * @param comparator   comparator defining the order of elements
+     * @param memoryBudget maximum number of elements to keep in memory
+     * @return Iterator over sorted elements
+     * @throws IllegalArgumentException if memory budget is not positive
+     * @see #sorted(Comparator, int, Codec)
+     */
+    public Iter<E> sorted(final Comparator<? super E> comparator, final int memoryBudget) {
+        return sorted(comparator, memoryBudget, Codecs.<E>serializable());
+    }
+
+    /**
+     * <p>Sorts elements keeping at most {@code memoryBudget} of them in memory. Sort is stable.</p>
+     * <p>If all the elements fit into the budget they are sorted in memory. Otherwise every {@code memoryBudget}
+     * elements are sorted and written to a temporary file with supplied {@link Codec}, and the sorted files are
+     * merged while the result is read, so only one element of each file is kept in memory.</p>
+     * <p>Sorting happens when the first element is requested, all the elements are read at that moment.
+     * Temporary files are deleted when they are read completely or, if iteration was not finished, when JVM
+     * exits. Failure to write or read the files is reported with {@link IterIOException}.</p>
+     *
+     * @param comparator   comparator defining the order of elements
+     * @param memoryBudget maximum number of elements to keep in memory
+     * @param codec        codec to store elements in temporary files
+     * @return Iterator over sorted elements
+     * @throws IllegalArgumentException if memory budget is not positive
+     */
+    public Iter<E> sorted(final Comparator<? super E> comparator, final int memoryBudget, final Codec<E> codec) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        return new Iter<E>(new ExternalSort<E>(this, comparator, memoryBudget, codec), Stage.NONE);
+    }
+
+    /**
+     * <p>Groups elements by key and folds elements of each group into a single result, starting with
+     * {@code initial} value. All the keys and results are kept in memory.</p>
+     * <p>Aggregation happens when the first result is requested, all the elements are read at that moment.
+     * Order of the results is not defined.</p>
+     *
+     * @param keyFunc function calculating key of an element
+     * @param initial initial value of the result for each key, it is shared between keys and must not be mutated
+     * @param fold    function folding element into result
+     * @param <K>     type of keys
+     * @param <R>     type of results
+     * @return Iterator over pairs of keys and results
+     * @see #aggregate(Func, Object, Function2, Function2, int, Codec, Codec)
+     */
+    public <K, R> Iter<Pair<K, R>> aggregate(final Func<K, E> keyFunc, final R initial, final Function2<R, R, E> fold) {
+        return new Iter<Pair<K, R>>(new HashAggregate<E, K, R>(this, keyFunc, initial, fold, null, Integer.MAX_VALUE, null, null), Stage.NONE);
+    }
+
+    /**
+     * <p>Groups elements by key and folds elements of each group into a single result, starting with
+     * {@code initial} value, keeping at most {@code memoryBudget} keys in memory. Raw elements are never
+     * collected, only partial results for each key are kept.</p>
+     * <p>When number of keys exceeds the budget, partial results are split by key hash into partitions, written
+     * into temporary files with supplied codecs and the memory is reused for the following elements. After all
+     * the elements are read, partitions are loaded one by one, and partial results of the same key are joined
+     * with {@code combine} function.</p>
+     * <p>Aggregation happens when the first result is requested, all the elements are read at that moment.
+     * Order of the results is not defined. Temporary files are deleted when they are loaded or, if iteration was
+     * not finished, when JVM exits. Failure to write or read the files is reported with {@link IterIOException}.</p>
+     *
+     * @param keyFunc      function calculating key of an element
+     * @param initial      initial value of the result for each key, it is shared between keys and must not be mutated
+     * @param fold         function folding element into result
+     * @param combine      function joining two partial results for the same key
+     * @param memoryBudget maximum number of keys to keep in memory
+     * @param keyCodec     codec to store keys in temporary files
+     * @param valueCodec   codec to store partial results in temporary files
+     * @param <K>          type of keys
+     * @param <R>          type of results
+     * @return Iterator over pairs of keys and results
+     * @throws IllegalArgumentException if memory budget is not positive
+     */
+    public <K, R> Iter<Pair<K, R>> aggregate(final Func<K, E> keyFunc, final R initial, final Function2<R, R, E> fold,
+                                            final Function2<R, R, R> combine, final int memoryBudget,
+                                            final Codec<K> keyCodec, final Codec<R> valueCodec) {
+        if (memoryBudget <= 0) {
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        return new Iter<Pair<K, R>>(new HashAggregate<E, K, R>(this, keyFunc, initial, fold, combine, memoryBudget, keyCodec, valueCodec), Stage.NONE);
+    }
+
+    /**
+     * <p>Returns windows of {@code size} consecutive elements, each window starts {@code step} elements after
+     * the previous one. Windows overlap if step is less than size, elements between windows are skipped if it is
+     * greater. Trailing elements which do not fill a whole window are not returned.</p>
+     * <p>Window is a read-only view over a ring buffer of {@code size} elements, the same {@link List} instance
+     * is returned for every window and elements are not copied. Window is valid only until the next element is
+     * requested and must not be retained, copy it if needed, e.g. with {@code new ArrayList<E>(window)}. This
+     * makes windows suitable for {@link #map(Func)} to an aggregated value, like moving average,
+     * or for {@link #forEach(Procedure)}, but not for {@link #toList()}.</p>
+     *
+     * @param size number of elements in a window
+     * @param step distance between starts of neighbouring windows
+     * @return Iterator over windows
+     * @throws IllegalArgumentException if size or step is not positive
+     */
+    public Iter<List<E>> sliding(final int size, final int step) {
+        if (size <= 0 || step <= 0) {
+            throw new IllegalArgumentException("Window size and step must be positive");
+        }
+        return then(Stage.sliding(size, step));
+    }
+
+    /**
+     * <p>Returns non-overlapping windows of {@code size} consecutive elements. Trailing elements which do not
+     * fill a whole window are not returned, use {@link #batch(int)} to keep them.</p>
+     * <p>Same as {@code sliding(size, size)}, see {@link #sliding(int, int)} for restrictions on use of windows.</p>
+     *
+     * @param size number of elements in a window
+     * @return Iterator over windows
+     * @throws IllegalArgumentException if size is not positive
+     */
+    public Iter<List<E>> windowed(final int size) {
+        return sliding(size, size);
     }
 
     /**
@@ -195,9 +543,13 @@ public class Iter<E> implements Iterable<E> {
      * @param executor {@link Procedure} to be executed on each element of iterable
      */
     public void forEach(final Procedure<E> executor) {
-        while (this.iterator.hasNext()) {
-            executor.call(this.iterator.next());
-        }
+        drain(new Sink<E>() {
+            @Override
+            boolean accept(final E value) {
+                executor.call(value);
+                return true;
+            }
+        });
     }
 
     /**
@@ -209,12 +561,36 @@ public class Iter<E> implements Iterable<E> {
      * @return Value of the left-folded collection
      */
     public <R> R reduce(final R starting, final Function2<R, R, E> f) {
-        R result = starting;
-        while (this.iterator.hasNext()) {
-            result = f.apply(result, this.iterator.next());
-        }
-        return result;
+        final Sink.Reduce<R, E> reducer = new Sink.Reduce<R, E>(starting, f);
+        drain(reducer);
+        return reducer.getResult();
+    }
 
+    /**
+     * Folds iterable iterator left with two functions at once, so that two results are calculated in a single pass
+     * over an expensive source without keeping the elements.
+     *
+     * @param firstStarting  initial value of the first result
+     * @param first          first folding function
+     * @param secondStarting initial value of the second result
+     * @param second         second folding function
+     * @param <R1>           type of the first resulting value
+     * @param <R2>           type of the second resulting value
+     * @return Pair of values folded by the first and by the second function
+     */
+    public <R1, R2> Pair<R1, R2> reduce(final R1 firstStarting, final Function2<R1, R1, E> first,
+                                        final R2 secondStarting, final Function2<R2, R2, E> second) {
+        final Sink.Reduce<R1, E> left = new Sink.Reduce<R1, E>(firstStarting, first);
+        final Sink.Reduce<R2, E> right = new Sink.Reduce<R2, E>(secondStarting, second);
+        drain(new Sink<E>() {
+            @Override
+            boolean accept(final E value) {
+                left.accept(value);
+                right.accept(value);
+                return true;
+            }
+        });
+        return Pair.of(left.getResult(), right.getResult());
     }
 
     /**
@@ -229,11 +605,7 @@ public class Iter<E> implements Iterable<E> {
         return new Promise<R>() {
             @Override
             public R get() {
-                R result = starting;
-                while (Iter.this.iterator.hasNext()) {
-                    result = f.apply(result, Iter.this.iterator.next());
-                }
-                return result;
+                return reduce(starting, f);
             }
         };
     }
@@ -247,39 +619,7 @@ public class Iter<E> implements Iterable<E> {
      * element will be evaluated when requested with {@link Iterator#next()}
      */
     public Iter<E> filter(final Predicate<E> predicate) {
-        return new Iter<E>(new Iterator<E>() {
-            private E nextValue;
-
-            @Override
-            public boolean hasNext() {
-                if (null != this.nextValue) {
-                    return true;
-                }
-                while (Iter.this.iterator.hasNext()) {
-                    this.nextValue = Iter.this.iterator.next();
-                    if (predicate.matches(this.nextValue)) {
-                        return true;
-                    }
-                }
-                this.nextValue = null;
-                return false;
-            }
-
-            @Override
-            public E next() {
-                if (null != this.nextValue) {
-                    final E result = this.nextValue;
-                    this.nextValue = null;
-                    return result;
-                }
-                throw new NoSuchElementException();
-            }
-
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException();
-            }
-        });
+        return then(Stage.filter(predicate));
     }
 
     /**
@@ -290,13 +630,9 @@ public class Iter<E> implements Iterable<E> {
      * @return Element found or of the default value
      */
     public E find(final Predicate<E> matcher, final E defaultValue) {
-        while (this.iterator.hasNext()) {
-            final E next = this.iterator.next();
-            if (matcher.matches(next)) {
-                return next;
-            }
-        }
-        return defaultValue;
+        final FindSink<E> finder = new FindSink<E>(matcher, defaultValue);
+        drain(finder);
+        return finder.result;
     }
 
     /**
@@ -310,13 +646,7 @@ public class Iter<E> implements Iterable<E> {
         return new Promise<E>() {
             @Override
             public E get() {
-                while (Iter.this.iterator.hasNext()) {
-                    final E next = Iter.this.iterator.next();
-                    if (matcher.matches(next)) {
-                        return next;
-                    }
-                }
-                return defaultValue;
+                return find(matcher, defaultValue);
             }
         };
     }
@@ -329,12 +659,9 @@ public class Iter<E> implements Iterable<E> {
      * @return {@code true} if all elements match predicate or {@code false} otherwise
      */
     public boolean all(final Predicate<E> matcher) {
-        while (this.iterator.hasNext()) {
-            if (!matcher.matches(this.iterator.next())) {
-                return false;
-            }
-        }
-        return true;
+        final MatchSink<E> mismatch = new MatchSink<E>(matcher, false);
+        drain(mismatch);
+        return !mismatch.found;
     }
 
     /**
@@ -344,16 +671,136 @@ public class Iter<E> implements Iterable<E> {
      * @return {@code true} if any of the elements match predicate or {@code false} otherwise
      */
     public boolean any(final Predicate<E> matcher) {
-        while (this.iterator.hasNext()) {
-            if (matcher.matches(this.iterator.next())) {
-                return true;
-            }
+        final MatchSink<E> match = new MatchSink<E>(matcher, true);
+        drain(match);
+        return match.found;
+    }
+
+    /**
+     * Finds the smallest element according to comparator. If several elements are equal, the first one is returned.
+     *
+     * @param comparator comparator defining the order of elements
+     * @return the smallest element
+     * @throws NoSuchElementException if iterator is empty
+     */
+    public E min(final Comparator<? super E> comparator) {
+        return max(Collections.reverseOrder(comparator));
+    }
+
+    /**
+     * Finds the greatest element according to comparator. If several elements are equal, the first one is returned.
+     *
+     * @param comparator comparator defining the order of elements
+     * @return the greatest element
+     * @throws NoSuchElementException if iterator is empty
+     */
+    public E max(final Comparator<? super E> comparator) {
+        final Sink.Max<E> max = new Sink.Max<E>(comparator);
+        drain(max);
+        return max.get();
+    }
+
+    /**
+     * <p>
+     * Finds {@code k} greatest elements according to comparator, without sorting all the elements.
+     * </p><p>
+     * Only {@code k} elements are kept in memory at any time, in a binary heap, so it takes O(n log k) time.
+     * </p>
+     *
+     * @param k          number of elements to find
+     * @param comparator comparator defining the order of elements
+     * @return unmodifiable list of at most {@code k} greatest elements, from the greatest to the smallest
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<E> topK(final int k, final Comparator<? super E> comparator) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of elements must not be negative");
         }
-        return false;
+        final Sink.TopK<E> top = new Sink.TopK<E>(k, comparator);
+        drain(top);
+        return Collections.unmodifiableList(top.toList());
     }
 
+    /**
+     * <p>
+     * Finds {@code k} elements with the highest scores, without sorting all the elements.
+     * </p><p>
+     * Score is calculated once for each element and kept as primitive {@code double}, so it is never boxed. Only
+     * {@code k} elements are kept in memory at any time, in a binary heap, so it takes O(n log k) time.
+     * </p>
+     *
+     * @param k     number of elements to find
+     * @param score function calculating score of an element
+     * @return unmodifiable list of at most {@code k} elements, from the highest score to the lowest
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<E> topK(final int k, final ToDoubleFunc<? super E> score) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of elements must not be negative");
+        }
+        final Sink.TopKByScore<E> top = new Sink.TopKByScore<E>(k, score);
+        drain(top);
+        return Collections.unmodifiableList(top.toList());
+    }
+
+    /**
+     * <p>
+     * Creates parallel version of this iterator which executes on a shared default {@link ForkJoinPool}.
+     * </p><p>
+     * Stages already applied to this iterator will be executed in parallel as well. This iterator should not
+     * be used after the call.
+     * </p>
+     *
+     * @return Parallel iterator over elements of this iterator
+     * @see ParallelIter
+     */
+    public ParallelIter<E> parallel() {
+        return parallel(null);
+    }
+
+    /**
+     * <p>
+     * Creates parallel version of this iterator which executes on supplied {@link ForkJoinPool}.
+     * </p><p>
+     * Stages already applied to this iterator will be executed in parallel as well. This iterator should not
+     * be used after the call. Operations which depend on position of elements, like {@link #limit(long)} or
+     * {@link #skip(long)}, and all the operations before them are executed sequentially.
+     * </p>
+     *
+     * @param pool {@link ForkJoinPool} to run parallel tasks on
+     * @return Parallel iterator over elements of this iterator
+     * @see ParallelIter
+     */
+    public ParallelIter<E> parallel(final ForkJoinPool pool) {
+        if (this.iterator instanceof Iter.StagedIterator) {
+            return new ParallelIter<E>(Source.of(this.iterator), Stage.NONE, pool, true);
+        }
+        final int sequential = Stage.lastSequential(this.stages);
+        if (sequential >= 0) {
+            final Stage[] prefix = Arrays.copyOfRange(this.stages, 0, sequential + 1);
+            final Stage[] rest = Arrays.copyOfRange(this.stages, sequential + 1, this.stages.length);
+            final Iter<Object> ordered = new Iter<Object>(this.source, prefix);
+            return new ParallelIter<E>(Source.of(ordered.iterator()), rest, pool, true);
+        }
+        return new ParallelIter<E>(this.source, this.stages, pool, true);
+    }
+
+    /**
+     * <p>
+     * Returns iterator over elements of this rich iterator. The same instance is returned on every call.
+     * </p><p>
+     * If any {@link #map(Func)} or {@link #filter(Predicate)} operations were applied, returned iterator will
+     * run all of them in a single step for each element.
+     * </p>
+     *
+     * @return {@link Iterator} over elements
+     */
+    @SuppressWarnings("unchecked")
     @Override
     public Iterator<E> iterator() {
+        if (null == this.iterator) {
+            this.iterator = 0 == this.stages.length ? (Iterator<E>) this.source : new StagedIterator();
+        }
         return this.iterator;
     }
 
@@ -365,23 +812,35 @@ public class Iter<E> implements Iterable<E> {
      */
     public String mkStr(final String separator) {
         final StringBuilder builder = new StringBuilder();
-        while (this.iterator.hasNext()) {
-            builder.append(this.iterator.next().toString());
-            if (this.iterator.hasNext()) {
-                builder.append(separator);
+        drain(new Sink<E>() {
+            private boolean first = true;
+
+            @Override
+            boolean accept(final E value) {
+                if (!this.first) {
+                    builder.append(separator);
+                }
+                this.first = false;
+                builder.append(value.toString());
+                return true;
             }
-        }
+        });
         return builder.toString();
     }
 
     /**
-     * Collect this iterable into collection
+     * Collect this iterable into collection supplied by the collector. If number of elements is known in advance it
+     * is passed to the collector as a size hint.
      *
      * @param collector {@link Collector} which will perform collection
      * @return {@link Collection} of all the elements in this iterable
      */
     public Collection<E> collectWith(final Collector<E> collector) {
-        return collector.collect(this);
+        final long size = size(true);
+        final Collection<E> collection = collector.supply(size >= 0 && size <= Integer.MAX_VALUE
+                ? (int) size : Collector.UNKNOWN_SIZE);
+        drain(new Sink.ToCollection<E>(collection));
+        return collection;
     }
 
     /**
@@ -398,5 +857,152 @@ public class Iter<E> implements Iterable<E> {
     public <K> Map<K, E> toMap(final Func<K, E> keyGenerator) {
         return Maps.toUnmodifiableMap(this, keyGenerator);
     }
-}
 
+    /**
+     * Creates new rich iterator which shares source with this one and has one more stage in the pipeline. If
+     * elements were already pulled through {@link #iterator()} the new iterator continues from that point.
+     */
+    private <R> Iter<R> then(final Stage stage) {
+        if (this.iterator instanceof Iter.StagedIterator) {
+            return new Iter<R>(Source.of(this.iterator), new Stage[]{stage});
+        }
+        return new Iter<R>(this.source, Stage.append(this.stages, stage));
+    }
+
+    /**
+     * <p>
+     * Number of elements this iterator will produce, if it can be determined without iterating. Size is taken from
+     * the source and adjusted by each stage of the pipeline.
+     * </p>
+     *
+     * @param exact if {@code true} only exact size is returned, otherwise upper bound is acceptable
+     * @return number of elements or {@link Source#UNKNOWN_SIZE}
+     */
+    long size(final boolean exact) {
+        if (this.iterator instanceof Iter.StagedIterator) {
+            return Source.UNKNOWN_SIZE;
+        }
+        return Stage.size(this.stages, this.source.size(), exact);
+    }
+
+    /**
+     * Collects all the elements directly into array of specified type. When size is known the array is allocated
+     * once and no copying is required.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T[] collect(final Class<?> elementType) {
+        final long bound = size(false);
+        final int capacity = Sink.ToArray.initialCapacity(size(true), bound);
+        final Sink.ToArray<T> collector = new Sink.ToArray<T>((T[]) Array.newInstance(elementType, capacity), bound);
+        drain((Sink<E>) collector);
+        return collector.toArray();
+    }
+
+    /**
+     * Pushes all the elements through the sinks of pipeline stages into the terminal sink.
+     *
+     * @param sink receiver of the elements
+     * @return {@code true} if all the elements were consumed, {@code false} if any sink requested to stop
+     */
+    boolean drain(final Sink<E> sink) {
+        if (this.iterator instanceof Iter.StagedIterator) {
+            return Stage.run(Stage.NONE, Source.of(this.iterator), sink);
+        }
+        return Stage.run(this.stages, this.source, sink);
+    }
+
+    /**
+     * Iterator which pushes source elements one at a time through the pipeline until something comes out
+     * of the last stage. Single source element may produce several results, for example in {@link #flatMap(Func)},
+     * they are buffered until read. When source is exhausted, the end of iteration is signalled to the stages, so
+     * that they can release elements they were holding back.
+     */
+    private final class StagedIterator implements Iterator<E> {
+        private final Sink<Object> pipeline;
+        private final List<Object> buffer;
+        private int position;
+        private boolean stopped;
+        private boolean finished;
+
+        private StagedIterator() {
+            this.buffer = new ArrayList<Object>(1);
+            this.pipeline = Stage.wrapAll(Iter.this.stages, new Sink.ToCollection<Object>(this.buffer));
+            this.pipeline.begin(Iter.this.source.size());
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.position == this.buffer.size() && !this.finished) {
+                this.buffer.clear();
+                this.position = 0;
+                if (!this.stopped && Iter.this.source.hasNext()) {
+                    this.stopped = !this.pipeline.accept(Iter.this.source.next());
+                    if (this.stopped) {
+                        Iter.this.source.cancel();
+                    }
+                } else {
+                    this.finished = true;
+                    this.pipeline.end();
+                }
+            }
+            return this.position < this.buffer.size();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return (E) this.buffer.get(this.position++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Rich iterators does not support remove()");
+        }
+    }
+
+    private static final class FindSink<E> extends Sink<E> {
+        private final Predicate<E> matcher;
+        private E result;
+
+        private FindSink(final Predicate<E> matcher, final E defaultValue) {
+            this.matcher = matcher;
+            this.result = defaultValue;
+        }
+
+        @Override
+        boolean accept(final E value) {
+            if (this.matcher.matches(value)) {
+                this.result = value;
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Looks for the first element for which predicate returns expected result. Result of the search is kept in
+     * the sink, because iteration may also be stopped by one of the stages.
+     */
+    private static final class MatchSink<E> extends Sink<E> {
+        private final Predicate<E> matcher;
+        private final boolean expected;
+        private boolean found;
+
+        private MatchSink(final Predicate<E> matcher, final boolean expected) {
+            this.matcher = matcher;
+            this.expected = expected;
+        }
+
+        @Override
+        boolean accept(final E value) {
+            if (this.matcher.matches(value) == this.expected) {
+                this.found = true;
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.io.IOException;
+
+/**
+ * Thrown when rich iterator fails to read or write external storage, wraps original {@link IOException}.
+ */
+public class IterIOException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message description of the failed operation
+     * @param cause   original exception
+     */
+    public IterIOException(final String message, final IOException cause) {
+        super(message, cause);
+    }
+}
@@ -16,6 +16,10 @@
 
 package net.ninjacat.smooth.iterators;
 
+import java.io.File;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -29,36 +33,33 @@ public final class Iters {
     }
 
     /**
-     * Generate iterable which returns integers in range [from; to)
+     * Generate iterable which returns integers in range [from; to). Use {@link IntIter#range(int, int)} to avoid
+     * boxing of values.
+     * <p>
+     * Returned iterator knows its size and can be split for parallel processing without iterating it.
+     * </p>
      *
      * @param from starting value
      * @param to   upper bound
      * @return rich iterator {@link Iter}
      */
     public static Iter<Integer> range(final int from, final int to) {
-        return Iter.of(new Iterator<Integer>() {
-            private int position = from;
-
-            @Override
-            public boolean hasNext() {
-                return this.position < to;
-            }
-
-            @Override
-            public Integer next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException();
-                }
-                final int result = this.position;
-                this.position += 1;
-                return result;
-            }
+        return IntRange.of(from, to).iter();
+    }
 
-            @Override
-            public void remove() {
-                throw new UnsupportedOperationException("ranges does not support remove()");
-            }
-        });
+    /**
+     * Generate iterable which returns integers starting with {@code from} and changing by {@code step} until
+     * {@code to} is reached, upper bound is not included. Step can be negative.
+     *
+     * @param from starting value
+     * @param to   bound of the range
+     * @param step difference between two consecutive values
+     * @return rich iterator {@link Iter}
+     * @throws IllegalArgumentException if step is zero
+     * @see IntRange
+     */
+    public static Iter<Integer> range(final int from, final int to, final int step) {
+        return IntRange.of(from, to, step).iter();
     }
 
     /**
@@ -103,4 +104,74 @@ public final class Iters {
             }
         });
     }
+
+    /**
+     * <p>
+     * Returns iterable over lines of UTF-8 encoded file, see {@link #lines(File, Charset)}.
+     * </p>
+     *
+     * @param file file to read
+     * @return Iterable over lines of the file
+     */
+    public static Iter<CharSequence> lines(final File file) {
+        return lines(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * <p>
+     * Returns iterable over lines of a file. File is read through memory-mapped {@link java.nio.channels.FileChannel}
+     * in segments, so files larger than 2GB are supported. Lines are terminated by {@code "\n"} or {@code "\r\n"}.
+     * </p><p>
+     * Each line is a view over the mapped file, which is valid only until next line is requested, no {@link String}
+     * is created unless {@link Object#toString()} is called. Lines are decoded only when their characters are
+     * accessed and lines consisting only of ASCII characters are not decoded at all.
+     * </p><p>
+     * File is opened when the first line is requested and closed when all the lines are read or iteration is stopped
+     * early by the pipeline. I/O errors are reported as {@link IterIOException}.
+     * </p>
+     *
+     * @param file    file to read
+     * @param charset encoding of the file, must be ASCII-compatible: UTF-8, US-ASCII, ISO-8859-* or windows-125x
+     * @return Iterable over lines of the file
+     * @throws IllegalArgumentException if charset is not ASCII-compatible
+     */
+    public static Iter<CharSequence> lines(final File file, final Charset charset) {
+        return Iter.of(new MappedLines(file, charset, MappedLines.SEGMENT_SIZE));
+    }
+
+    /**
+     * Returns iterable over fixed-size records of a binary file with values in big-endian byte order,
+     * see {@link #records(File, int, ByteOrder)}.
+     *
+     * @param file       file to read
+     * @param recordSize size of a record in bytes
+     * @return Iterable over records of the file
+     */
+    public static Iter<Record> records(final File file, final int recordSize) {
+        return records(file, recordSize, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * <p>
+     * Returns iterable over fixed-size records of a binary file. File is read with {@link java.nio.channels.FileChannel}
+     * in large blocks into a direct buffer.
+     * </p><p>
+     * Each record is a {@link Record} view over the buffer, the same instance is returned for every record and is
+     * valid only until next record is requested. Reading file does not create an object per record, so large files
+     * can be filtered or reduced with almost no allocation.
+     * </p><p>
+     * File is opened when the first record is requested and closed when all the records are read or iteration is
+     * stopped early by the pipeline. I/O errors are reported as {@link IterIOException}, truncated last record is
+     * reported the same way after all the complete records are read.
+     * </p>
+     *
+     * @param file       file to read
+     * @param recordSize size of a record in bytes
+     * @param order      byte order of values in records
+     * @return Iterable over records of the file
+     * @throws IllegalArgumentException if record size is not positive
+     */
+    public static Iter<Record> records(final File file, final int recordSize, final ByteOrder order) {
+        return Iter.of(new RecordSource(file, recordSize, order, RecordSource.BLOCK_SIZE));
+    }
 }
@@ -1,10 +1,10 @@
 package net.ninjacat.smooth.iterators;
 
-import net.ninjacat.smooth.collections.Collect;
 import net.ninjacat.smooth.functions.Func;
 import net.ninjacat.smooth.functions.Function2;
 import net.ninjacat.smooth.functions.Predicate;
 import net.ninjacat.smooth.functions.Promise;
+import net.ninjacat.smooth.functions.Provider;
 
 import java.util.*;
 
@@ -21,18 +21,47 @@ import java.util.*;
  * <p>
  * <p>This is essentially a rich wrapper around {@link Iterator} over collection. Standard limitations of iterators apply,
  * like restriction of changing collection during iteration</p>
+ * <p>
+ * Elements of a lazy iterable can be read only once, unless it is {@link #memoize() memoized}. Calling {@link #head()}
+ * or {@link #tail()} turns the iterable into a persistent lazy sequence, which reads elements in small chunks and
+ * remembers them, so both methods return the same results on every call and can be used for recursive processing.
+ * </p>
  *
  * @param <E> Type of the elements in the iterator
  */
 public class LazyIter<E> implements Iterable<E> {
     private final Iter<E> collection;
+    private final Provider<Iter<E>> replay;
+    private LazySeq<E> sequence;
 
     private LazyIter(final Iterable<E> iterable) {
-        this.collection = new Iter<E>(iterable.iterator());
+        this(new Iter<E>(iterable.iterator()));
     }
 
     private LazyIter(final Iterator<E> iterable) {
-        this.collection = new Iter<E>(iterable);
+        this(new Iter<E>(iterable));
+    }
+
+    private LazyIter(final Iter<E> iter) {
+        this.collection = iter;
+        this.replay = null;
+    }
+
+    /**
+     * Creates replayable lazy iterable, each operation on it reads elements from a new iterator.
+     */
+    private LazyIter(final Provider<Iter<E>> replay) {
+        this.collection = null;
+        this.replay = replay;
+    }
+
+    /**
+     * Creates lazy iterable backed by a persistent sequence, it can be read any number of times.
+     */
+    private LazyIter(final LazySeq<E> sequence) {
+        this.collection = null;
+        this.replay = null;
+        this.sequence = sequence;
     }
 
     /**
@@ -43,6 +72,9 @@ public class LazyIter<E> implements Iterable<E> {
      * @return new lazy iterable
      */
     public static <E> LazyIter<E> of(final Collection<E> coll) {
+        if (coll instanceof List) {
+            return new LazyIter<E>(Iter.of(Collections.unmodifiableList((List<E>) coll)));
+        }
         return new LazyIter<E>(Collections.unmodifiableCollection(coll));
     }
 
@@ -50,7 +82,7 @@ public class LazyIter<E> implements Iterable<E> {
         final List<E> holder = new ArrayList<E>(tail.size() + 1);
         holder.add(head);
         holder.addAll(tail);
-        return new LazyIter<E>(holder);
+        return new LazyIter<E>(Iter.of(holder));
     }
 
     /**
@@ -70,7 +102,7 @@ public class LazyIter<E> implements Iterable<E> {
      * @return {@link List} containing all the items from this collection. Returned list is immutable
      */
     public List<E> toList() {
-        return Collect.iteratorToList(this.collection.iterator());
+        return iter().toList();
     }
 
     /**
@@ -79,7 +111,7 @@ public class LazyIter<E> implements Iterable<E> {
      * @return {@link Set} containing all the items from this collection. Returned list is immutable
      */
     public Set<E> toSet() {
-        return Collect.iteratorToSet(this.collection.iterator());
+        return iter().toSet();
     }
 
     /**
@@ -95,7 +127,7 @@ public class LazyIter<E> implements Iterable<E> {
      * @throws ArrayStoreException if the type of an element in this List cannot be stored in the type of the specified array.
      */
     public E[] toArray(final E[] array) {
-        return toList().toArray(array);
+        return iter().toArray(array);
     }
 
     /**
@@ -105,7 +137,7 @@ public class LazyIter<E> implements Iterable<E> {
      */
     @Override
     public Iterator<E> iterator() {
-        return this.collection.iterator();
+        return iter().iterator();
     }
 
     /**
@@ -118,7 +150,31 @@ public class LazyIter<E> implements Iterable<E> {
      * @return Iterable collection of mapped values
      */
     public <R> LazyIter<R> map(final Func<R, E> func) {
-        return new LazyIter<R>(this.collection.map(func));
+        return derive(new Func<Iter<R>, Iter<E>>() {
+            @Override
+            public Iter<R> apply(final Iter<E> iter) {
+                return iter.map(func);
+            }
+        });
+    }
+
+    /**
+     * <p>Replaces each element of the collection with all the elements of an {@link Iterable} produced by supplied
+     * function.</p>
+     * <p>Inner elements are read only when requested, lists and arrays wrapped in {@link ArrayIterable} are read
+     * by index.</p>
+     *
+     * @param func function producing elements for each element of this collection
+     * @param <R>  type of resulting elements
+     * @return Iterable collection of elements of all produced iterables
+     */
+    public <R> LazyIter<R> flatMap(final Func<? extends Iterable<R>, E> func) {
+        return derive(new Func<Iter<R>, Iter<E>>() {
+            @Override
+            public Iter<R> apply(final Iter<E> iter) {
+                return iter.flatMap(func);
+            }
+        });
     }
 
     /**
@@ -133,7 +189,7 @@ public class LazyIter<E> implements Iterable<E> {
         return new Promise<R>() {
             @Override
             public R get() {
-                return LazyIter.this.collection.reduce(starting, f);
+                return LazyIter.this.iter().reduce(starting, f);
             }
         };
     }
@@ -147,7 +203,116 @@ public class LazyIter<E> implements Iterable<E> {
      * element will be evaluated when requested with {@link Iterator#next()}
      */
     public LazyIter<E> filter(final Predicate<E> predicate) {
-        return new LazyIter<E>(this.collection.filter(predicate));
+        return derive(new Func<Iter<E>, Iter<E>>() {
+            @Override
+            public Iter<E> apply(final Iter<E> iter) {
+                return iter.filter(predicate);
+            }
+        });
+    }
+
+    /**
+     * Truncates this collection to at most {@code n} elements. Iteration stops as soon as the last of them is produced.
+     *
+     * @param n maximum number of elements
+     * @return Iterable collection of first {@code n} elements
+     * @throws IllegalArgumentException if n is negative
+     */
+    public LazyIter<E> limit(final long n) {
+        return derive(new Func<Iter<E>, Iter<E>>() {
+            @Override
+            public Iter<E> apply(final Iter<E> iter) {
+                return iter.limit(n);
+            }
+        });
+    }
+
+    /**
+     * Discards first {@code n} elements of this collection. Lists and arrays jump straight to the required position.
+     *
+     * @param n number of elements to skip
+     * @return Iterable collection of remaining elements
+     * @throws IllegalArgumentException if n is negative
+     */
+    public LazyIter<E> skip(final long n) {
+        return derive(new Func<Iter<E>, Iter<E>>() {
+            @Override
+            public Iter<E> apply(final Iter<E> iter) {
+                return iter.skip(n);
+            }
+        });
+    }
+
+    /**
+     * Returns elements of this collection while they match predicate.
+     *
+     * @param predicate predicate to test elements
+     * @return Iterable collection of the longest prefix of matching elements
+     */
+    public LazyIter<E> takeWhile(final Predicate<E> predicate) {
+        return derive(new Func<Iter<E>, Iter<E>>() {
+            @Override
+            public Iter<E> apply(final Iter<E> iter) {
+                return iter.takeWhile(predicate);
+            }
+        });
+    }
+
+    /**
+     * Discards elements of this collection while they match predicate.
+     *
+     * @param predicate predicate to test elements
+     * @return Iterable collection of elements starting with the first one that does not match
+     */
+    public LazyIter<E> dropWhile(final Predicate<E> predicate) {
+        return derive(new Func<Iter<E>, Iter<E>>() {
+            @Override
+            public Iter<E> apply(final Iter<E> iter) {
+                return iter.dropWhile(predicate);
+            }
+        });
+    }
+
+    /**
+     * <p>
+     * Creates replayable version of this iterable. Elements are read from this iterable only once, when they are
+     * requested for the first time, and are remembered, so that every following operation on the memoized
+     * iterable reads them again from the beginning. This way expensive transformations applied before memoization
+     * are evaluated only once for each element.
+     * </p><p>
+     * This iterable should not be used after the call.
+     * </p>
+     *
+     * @return Memoized iterable
+     */
+    public LazyIter<E> memoize() {
+        return memoize(Long.MAX_VALUE);
+    }
+
+    /**
+     * <p>
+     * Creates replayable version of this iterable which remembers at most {@code maxElements} first elements.
+     * </p><p>
+     * Elements past the bound are not remembered, the operation which read them first is the only one that
+     * sees them. Any other operation which tries to read them fails with {@link IllegalStateException}.
+     * </p>
+     *
+     * @param maxElements maximum number of elements to remember
+     * @return Memoized iterable
+     * @throws IllegalArgumentException if maxElements is negative
+     * @see #memoize()
+     */
+    public LazyIter<E> memoize(final long maxElements) {
+        if (maxElements < 0) {
+            throw new IllegalArgumentException("Memoization bound must not be negative");
+        }
+        final Memo<E> memo = new Memo<E>(iter().iterator(), maxElements);
+        return new LazyIter<E>(new Provider<Iter<E>>() {
+            @Override
+            public Iter<E> get() {
+                return new Iter<E>(memo.reader());
+            }
+        });
     }
 
     /**
@@ -157,7 +322,7 @@ public class LazyIter<E> implements Iterable<E> {
      * @throws NoSuchElementException if collection is empty
      */
     public E head() {
-        return this.collection.iterator().next();
+        return sequence().head();
     }
 
     /**
@@ -167,9 +332,7 @@ public class LazyIter<E> implements Iterable<E> {
      * @throws NoSuchElementException if collection is empty
      */
     public LazyIter<E> tail() {
-        final Iterator<E> iter = this.collection.iterator();
-        iter.next();
-        return new LazyIter<E>(iter);
+        return new LazyIter<E>(sequence().tail());
     }
 
     /**
@@ -183,7 +346,7 @@ public class LazyIter<E> implements Iterable<E> {
         return new Promise<E>() {
             @Override
             public E get() {
-                return LazyIter.this.collection.find(matcher, defaultValue);
+                return LazyIter.this.iter().find(matcher, defaultValue);
             }
         };
     }
@@ -198,7 +361,7 @@ public class LazyIter<E> implements Iterable<E> {
         return new Promise<Boolean>() {
             @Override
             public Boolean get() {
-                return LazyIter.this.collection.all(matcher);
+                return LazyIter.this.iter().all(matcher);
             }
         };
     }
@@ -213,9 +376,42 @@ public class LazyIter<E> implements Iterable<E> {
         return new Promise<Boolean>() {
             @Override
             public Boolean get() {
-                return LazyIter.this.collection.any(matcher);
+                return LazyIter.this.iter().any(matcher);
             }
         };
     }
-}
 
+    /**
+     * @return rich iterator to read elements from, for memoized iterable or sequence a new one is created on each call
+     */
+    private Iter<E> iter() {
+        if (null != this.sequence) {
+            return this.sequence.iter();
+        }
+        return null == this.replay ? this.collection : this.replay.get();
+    }
+
+    /**
+     * @return persistent sequence of elements of this iterable, it is created on first call
+     */
+    private LazySeq<E> sequence() {
+        if (null == this.sequence) {
+            this.sequence = LazySeq.of(iter().iterator());
+        }
+        return this.sequence;
+    }
+
+    /**
+     * Creates new lazy iterable by applying an operation to the rich iterator of this one. The operation is applied
+     * every time the elements are read, so that a view derived before {@link #head()} or {@link #tail()} were called
+     * reads from the sequence they have created instead of the elements left after it.
+     */
+    private <R> LazyIter<R> derive(final Func<Iter<R>, Iter<E>> operation) {
+        return new LazyIter<R>(new Provider<Iter<R>>() {
+            @Override
+            public Iter<R> get() {
+                return operation.apply(LazyIter.this.iter());
+            }
+        });
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Immutable lazy sequence of elements read from an iterator.
+ * </p><p>
+ * Elements are read from the iterator in chunks of {@value #CHUNK_SIZE}, only when they are requested for the first
+ * time. Once read, elements are remembered, so that {@link #head()} always returns the same value and {@link #tail()}
+ * always returns the same sequence. Tails share chunks with the sequence they were taken from, so {@link #tail()}
+ * takes constant time and does not copy or re-read any elements.
+ * </p><p>
+ * Iterator must not be used by anything else after the sequence is created.
+ * </p>
+ *
+ * @param <E> type of elements
+ */
+public final class LazySeq<E> implements Iterable<E> {
+    /**
+     * Number of elements read from the iterator at once
+     */
+    static final int CHUNK_SIZE = 32;
+
+    private final Chunk<E> chunk;
+    private final int offset;
+
+    private LazySeq(final Chunk<E> chunk, final int offset) {
+        this.chunk = chunk;
+        this.offset = offset;
+    }
+
+    /**
+     * Creates lazy sequence of elements of an iterator. No elements are read until they are requested.
+     *
+     * @param iterator iterator to read elements from
+     * @param <E>      type of elements
+     * @return lazy sequence
+     */
+    public static <E> LazySeq<E> of(final Iterator<E> iterator) {
+        return new LazySeq<E>(new Chunk<E>(iterator), 0);
+    }
+
+    /**
+     * Creates lazy sequence of elements of an iterable. No elements are read until they are requested.
+     *
+     * @param iterable iterable to read elements from
+     * @param <E>      type of elements
+     * @return lazy sequence
+     */
+    public static <E> LazySeq<E> of(final Iterable<E> iterable) {
+        return of(iterable.iterator());
+    }
+
+    /**
+     * @return {@code true} if this sequence has no elements
+     */
+    public boolean isEmpty() {
+        return this.offset >= this.chunk.elements().length;
+    }
+
+    /**
+     * @return first element of the sequence
+     * @throws NoSuchElementException if sequence is empty
+     */
+    @SuppressWarnings("unchecked")
+    public E head() {
+        final Object[] elements = this.chunk.elements();
+        if (this.offset >= elements.length) {
+            throw new NoSuchElementException();
+        }
+        return (E) elements[this.offset];
+    }
+
+    /**
+     * Returns sequence of all the elements except the first one. Next chunk of elements is not read until
+     * it is requested from the returned sequence.
+     *
+     * @return tail of the sequence
+     * @throws NoSuchElementException if sequence is empty
+     */
+    public LazySeq<E> tail() {
+        final int length = this.chunk.elements().length;
+        if (this.offset >= length) {
+            throw new NoSuchElementException();
+        }
+        if (this.offset + 1 < length || length < CHUNK_SIZE) {
+            return new LazySeq<E>(this.chunk, this.offset + 1);
+        }
+        return new LazySeq<E>(this.chunk.next(), 0);
+    }
+
+    /**
+     * @return rich iterator over elements of this sequence
+     */
+    public Iter<E> iter() {
+        return new Iter<E>(iterator());
+    }
+
+    /**
+     * Returns new iterator over elements of this sequence. Any number of iterators can read the sequence.
+     *
+     * @return Iterator over elements
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new SeqSource<E>(this.chunk, this.offset);
+    }
+
+    /**
+     * Part of the sequence. Chunk reads its elements when they are accessed for the first time, next chunk is
+     * created only after this one was filled completely.
+     */
+    private static final class Chunk<E> {
+        private volatile Object[] elements;
+        private Iterator<E> upstream;
+        private Chunk<E> next;
+
+        private Chunk(final Iterator<E> upstream) {
+            this.upstream = upstream;
+        }
+
+        /**
+         * @return elements of the chunk, array is shorter than {@link #CHUNK_SIZE} only in the last chunk
+         */
+        Object[] elements() {
+            Object[] result = this.elements;
+            if (null == result) {
+                synchronized (this) {
+                    result = this.elements;
+                    if (null == result) {
+                        result = read();
+                        this.elements = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return chunk following this one, must only be called for a full chunk
+         */
+        synchronized Chunk<E> next() {
+            if (null == this.next) {
+                this.next = new Chunk<E>(this.upstream);
+                this.upstream = null;
+            }
+            return this.next;
+        }
+
+        private Object[] read() {
+            final Object[] buffer = new Object[CHUNK_SIZE];
+            int count = 0;
+            while (count < CHUNK_SIZE && this.upstream.hasNext()) {
+                buffer[count++] = this.upstream.next();
+            }
+            if (count < CHUNK_SIZE) {
+                this.upstream = null;
+                return Arrays.copyOf(buffer, count);
+            }
+            return buffer;
+        }
+    }
+
+    private static final class SeqSource<E> extends Source<E> {
+        private Chunk<E> chunk;
+        private Object[] elements;
+        private int offset;
+
+        private SeqSource(final Chunk<E> chunk, final int offset) {
+            this.chunk = chunk;
+            this.offset = offset;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return available();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E next() {
+            if (!available()) {
+                throw new NoSuchElementException();
+            }
+            return (E) this.elements[this.offset++];
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        boolean drainTo(final Sink<? super E> sink) {
+            while (available()) {
+                final Object[] data = this.elements;
+                for (int i = this.offset; i < data.length; i++) {
+                    if (!sink.accept((E) data[i])) {
+                        this.offset = i + 1;
+                        return false;
+                    }
+                }
+                this.offset = data.length;
+            }
+            return true;
+        }
+
+        /**
+         * Moves to the next chunk when current one is read completely.
+         */
+        private boolean available() {
+            if (null == this.elements) {
+                this.elements = this.chunk.elements();
+            }
+            while (this.offset >= this.elements.length) {
+                if (this.elements.length < CHUNK_SIZE) {
+                    return false;
+                }
+                this.chunk = this.chunk.next();
+                this.elements = this.chunk.elements();
+                this.offset = 0;
+            }
+            return true;
+        }
+    }
+}
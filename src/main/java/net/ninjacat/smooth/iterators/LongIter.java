@@ -0,0 +1,446 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.LongFunc;
+import net.ninjacat.smooth.functions.LongPredicate;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>Functional style rich iterator over primitive {@code long} values</p>
+ * <p>
+ * Works similar to {@link Iter}, but elements are never boxed, which makes it suitable for numeric aggregation over
+ * large amounts of data. Operations {@link #map(LongFunc)} and {@link #filter(LongPredicate)} are recorded as stages of
+ * a pipeline and applied to each element in a single loop when terminal operation is called.
+ * </p>
+ * <p>Use {@link #boxed()} to continue processing with generic {@link Iter}</p>
+ */
+public class LongIter {
+    private static final LongStage[] NO_STAGES = new LongStage[0];
+
+    private final LongSource source;
+    private final LongStage[] stages;
+    private final boolean sized;
+
+    private LongIter(final LongSource source, final LongStage[] stages, final boolean sized) {
+        this.source = source;
+        this.stages = stages;
+        this.sized = sized;
+    }
+
+    /**
+     * Creates rich iterator over array of {@code long}s. Array is not copied.
+     *
+     * @param data array or varargs
+     * @return Primitive rich iterator
+     */
+    public static LongIter of(final long... data) {
+        return new LongIter(new ArraySource(data), NO_STAGES, true);
+    }
+
+    /**
+     * Creates rich iterator which returns {@code long}s in range [from; to) without boxing them
+     *
+     * @param from starting value
+     * @param to   upper bound
+     * @return Primitive rich iterator
+     * @see LongRange
+     */
+    public static LongIter range(final long from, final long to) {
+        return LongRange.of(from, to).longs();
+    }
+
+    static LongIter range(final long first, final long step, final long count) {
+        return new LongIter(new RangeSource(first, step, count), NO_STAGES, true);
+    }
+
+    /**
+     * Maps all the values to other values using supplied function. Transformation is applied lazily.
+     *
+     * @param func mapping function
+     * @return Primitive rich iterator of mapped values
+     */
+    public LongIter map(final LongFunc func) {
+        return then(this.sized, new LongStage() {
+            @Override
+            LongSink wrap(final LongSink downstream) {
+                return new LongSink() {
+                    @Override
+                    boolean accept(final long value) {
+                        return downstream.accept(func.apply(value));
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * Filters out values which do not match predicate. Predicate is applied lazily.
+     *
+     * @param predicate function to verify element, should return {@code true} for elements to keep
+     * @return Primitive rich iterator of matching values
+     */
+    public LongIter filter(final LongPredicate predicate) {
+        return then(false, new LongStage() {
+            @Override
+            LongSink wrap(final LongSink downstream) {
+                return new LongSink() {
+                    @Override
+                    boolean accept(final long value) {
+                        return !predicate.matches(value) || downstream.accept(value);
+                    }
+                };
+            }
+        });
+    }
+
+    /**
+     * @return Sum of all the elements
+     */
+    public long sum() {
+        final Sum sum = new Sum();
+        drain(sum);
+        return sum.result;
+    }
+
+    /**
+     * @return Number of elements
+     */
+    public long count() {
+        final Count count = new Count();
+        drain(count);
+        return count.result;
+    }
+
+    /**
+     * @return Smallest element
+     * @throws NoSuchElementException if iterator is empty
+     */
+    public long min() {
+        final Extremum min = new Extremum(false);
+        drain(min);
+        return min.get();
+    }
+
+    /**
+     * @return Largest element
+     * @throws NoSuchElementException if iterator is empty
+     */
+    public long max() {
+        final Extremum max = new Extremum(true);
+        drain(max);
+        return max.get();
+    }
+
+    /**
+     * Collects all the elements into a new array. If number of elements is known, array is allocated once. If only
+     * upper bound is known, array never grows beyond it.
+     *
+     * @return array of elements
+     */
+    public long[] toArray() {
+        final long bound = this.source.size();
+        final long exact = this.sized ? bound : -1;
+        final ToArray collector = new ToArray(0 <= exact && exact < Integer.MAX_VALUE ? (int) exact : 16, bound);
+        drain(collector);
+        return collector.get();
+    }
+
+    /**
+     * Converts this iterator into generic rich iterator of boxed values. Values are boxed one at a time when
+     * they are requested.
+     *
+     * @return Rich iterator of {@link Long} values
+     */
+    public Iter<Long> boxed() {
+        return Iter.of(new BoxedSource());
+    }
+
+    private LongIter then(final boolean keepsSize, final LongStage stage) {
+        final LongStage[] result = Arrays.copyOf(this.stages, this.stages.length + 1);
+        result[this.stages.length] = stage;
+        return new LongIter(this.source, result, keepsSize);
+    }
+
+    private LongSink pipeline(final LongSink terminal) {
+        LongSink sink = terminal;
+        for (int i = this.stages.length - 1; i >= 0; i--) {
+            sink = this.stages[i].wrap(sink);
+        }
+        return sink;
+    }
+
+    private boolean drain(final LongSink sink) {
+        return this.source.drainTo(pipeline(sink));
+    }
+
+    /**
+     * Receiver of primitive elements
+     */
+    private abstract static class LongSink {
+        abstract boolean accept(long value);
+    }
+
+    /**
+     * Single intermediate operation of the pipeline
+     */
+    private abstract static class LongStage {
+        abstract LongSink wrap(LongSink downstream);
+    }
+
+    /**
+     * Source of primitive elements which can be read one by one or pushed into a sink
+     */
+    private abstract static class LongSource {
+        abstract boolean hasNext();
+
+        abstract long next();
+
+        abstract boolean drainTo(LongSink sink);
+
+        abstract long size();
+    }
+
+    private static final class ArraySource extends LongSource {
+        private final long[] data;
+        private int position;
+
+        private ArraySource(final long[] data) {
+            this.data = data;
+            this.position = 0;
+        }
+
+        @Override
+        boolean hasNext() {
+            return this.position < this.data.length;
+        }
+
+        @Override
+        long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.data[this.position++];
+        }
+
+        @Override
+        boolean drainTo(final LongSink sink) {
+            final long[] array = this.data;
+            for (int i = this.position; i < array.length; i++) {
+                if (!sink.accept(array[i])) {
+                    this.position = i + 1;
+                    return false;
+                }
+            }
+            this.position = array.length;
+            return true;
+        }
+
+        @Override
+        long size() {
+            return this.data.length - this.position;
+        }
+    }
+
+    private static final class RangeSource extends LongSource {
+        private final long step;
+        private long position;
+        private long remaining;
+
+        private RangeSource(final long first, final long step, final long count) {
+            this.position = first;
+            this.step = step;
+            this.remaining = count;
+        }
+
+        @Override
+        boolean hasNext() {
+            return this.remaining > 0;
+        }
+
+        @Override
+        long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final long result = this.position;
+            this.position += this.step;
+            this.remaining -= 1;
+            return result;
+        }
+
+        @Override
+        boolean drainTo(final LongSink sink) {
+            final long delta = this.step;
+            long value = this.position;
+            long left = this.remaining;
+            while (left > 0) {
+                final long current = value;
+                value += delta;
+                left -= 1;
+                if (!sink.accept(current)) {
+                    this.position = value;
+                    this.remaining = left;
+                    return false;
+                }
+            }
+            this.position = value;
+            this.remaining = 0;
+            return true;
+        }
+
+        @Override
+        long size() {
+            return this.remaining;
+        }
+    }
+
+    private static final class Sum extends LongSink {
+        private long result;
+
+        @Override
+        boolean accept(final long value) {
+            this.result += value;
+            return true;
+        }
+    }
+
+    private static final class Count extends LongSink {
+        private long result;
+
+        @Override
+        boolean accept(final long value) {
+            this.result += 1;
+            return true;
+        }
+    }
+
+    private static final class Extremum extends LongSink {
+        private final boolean largest;
+        private boolean found;
+        private long result;
+
+        private Extremum(final boolean largest) {
+            this.largest = largest;
+        }
+
+        @Override
+        boolean accept(final long value) {
+            if (!this.found || (this.largest ? value > this.result : value < this.result)) {
+                this.result = value;
+                this.found = true;
+            }
+            return true;
+        }
+
+        private long get() {
+            if (!this.found) {
+                throw new NoSuchElementException("Iterator is empty");
+            }
+            return this.result;
+        }
+    }
+
+    private static final class ToArray extends LongSink {
+        private final long bound;
+        private long[] buffer;
+        private int size;
+
+        private ToArray(final int capacity, final long bound) {
+            this.buffer = new long[capacity];
+            this.bound = bound;
+        }
+
+        @Override
+        boolean accept(final long value) {
+            if (this.size == this.buffer.length) {
+                final int next = Math.max(16, this.size * 2);
+                this.buffer = Arrays.copyOf(this.buffer, this.bound > this.size ? (int) Math.min(next, this.bound) : next);
+            }
+            this.buffer[this.size++] = value;
+            return true;
+        }
+
+        private long[] get() {
+            return this.size == this.buffer.length ? this.buffer : Arrays.copyOf(this.buffer, this.size);
+        }
+    }
+
+    /**
+     * Generic source which boxes values coming out of the primitive pipeline
+     */
+    private final class BoxedSource extends Source<Long> {
+        private final LongSink pull;
+        private boolean buffered;
+        private boolean stopped;
+        private long nextValue;
+
+        private BoxedSource() {
+            this.pull = pipeline(new LongSink() {
+                @Override
+                boolean accept(final long value) {
+                    BoxedSource.this.nextValue = value;
+                    BoxedSource.this.buffered = true;
+                    return true;
+                }
+            });
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!this.buffered && !this.stopped && LongIter.this.source.hasNext()) {
+                this.stopped = !this.pull.accept(LongIter.this.source.next());
+            }
+            return this.buffered;
+        }
+
+        @Override
+        public Long next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            this.buffered = false;
+            return this.nextValue;
+        }
+
+        @Override
+        boolean drainTo(final Sink<? super Long> sink) {
+            if (this.buffered) {
+                this.buffered = false;
+                if (!sink.accept(this.nextValue)) {
+                    return false;
+                }
+            }
+            if (this.stopped) {
+                return true;
+            }
+            return drain(new LongSink() {
+                @Override
+                boolean accept(final long value) {
+                    return sink.accept(value);
+                }
+            });
+        }
+
+        @Override
+        long size() {
+            return LongIter.this.sized && !this.buffered && !this.stopped ? LongIter.this.source.size() : UNKNOWN_SIZE;
+        }
+    }
+}
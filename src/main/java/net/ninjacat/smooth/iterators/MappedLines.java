@@ -0,0 +1,282 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Source of lines of a file read through a memory-mapped {@link FileChannel}.
+ * </p><p>
+ * File is mapped in segments, so files larger than 2GB can be read. Next segment is mapped starting at the first line
+ * which does not fit into the current one, a line longer than a segment gets a larger segment of its own.
+ * </p><p>
+ * Lines are returned as a single reusable {@link CharSequence} view over the mapped bytes, which is only valid until
+ * the next line is requested. Bytes are decoded only when characters of the line are accessed and lines consisting
+ * only of ASCII characters are never decoded at all. Use {@link Object#toString()} to keep the line.
+ * </p><p>
+ * Lines are terminated by {@code '\n'}, optionally preceded by {@code '\r'}. Terminators are not included into lines.
+ * Channel is opened on the first access and closed when the file is read completely or iteration is stopped.
+ * </p>
+ */
+final class MappedLines extends Source<CharSequence> {
+    /**
+     * Default size of a mapped segment
+     */
+    static final int SEGMENT_SIZE = 1 << 28;
+
+    private final File file;
+    private final Charset charset;
+    private final int segmentSize;
+    private final Line line;
+    private FileChannel channel;
+    private long fileSize;
+    private ByteBuffer segment;
+    private long segmentStart;
+    private long position;
+    private boolean ready;
+    private boolean finished;
+
+    /**
+     * @param file        file to read
+     * @param charset     encoding of the file, must be ASCII-compatible, see {@link #isAsciiCompatible(Charset)}
+     * @param segmentSize number of bytes to map at once
+     */
+    MappedLines(final File file, final Charset charset, final int segmentSize) {
+        if (!isAsciiCompatible(charset)) {
+            throw new IllegalArgumentException("Charset " + charset + " is not ASCII-compatible");
+        }
+        this.file = file;
+        this.charset = charset;
+        this.segmentSize = segmentSize;
+        this.line = new Line(charset);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!this.ready && !this.finished) {
+            this.ready = advance();
+        }
+        return this.ready;
+    }
+
+    @Override
+    public CharSequence next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        this.ready = false;
+        return this.line;
+    }
+
+    @Override
+    void cancel() {
+        close();
+    }
+
+    /**
+     * Finds the next line and points the view to it.
+     */
+    private boolean advance() {
+        try {
+            if (null == this.channel) {
+                this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+                this.fileSize = this.channel.size();
+            }
+            if (this.position >= this.fileSize) {
+                close();
+                return false;
+            }
+            if (null == this.segment || this.position >= this.segmentStart + this.segment.limit()) {
+                map(this.segmentSize);
+            }
+            int end = find(this.segment, (int) (this.position - this.segmentStart));
+            while (end < 0 && this.segmentStart + this.segment.limit() < this.fileSize) {
+                final long length = this.segment.limit() - (this.position - this.segmentStart);
+                if (length >= Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Line at offset " + this.position + " is longer than 2GB");
+                }
+                map((int) Math.min(Integer.MAX_VALUE, Math.max(this.segmentSize, length * 2)));
+                end = find(this.segment, (int) (this.position - this.segmentStart));
+            }
+            final int start = (int) (this.position - this.segmentStart);
+            if (end < 0) {
+                end = this.segment.limit();
+                this.position = this.fileSize;
+            } else {
+                this.position = this.segmentStart + end + 1;
+            }
+            if (end > start && this.segment.get(end - 1) == '\r') {
+                end -= 1;
+            }
+            this.line.reset(this.segment, start, end - start);
+            return true;
+        } catch (final IOException e) {
+            close();
+            throw new IterIOException("Failed to read " + this.file, e);
+        }
+    }
+
+    /**
+     * Maps up to {@code size} bytes starting at the beginning of the current line.
+     */
+    private void map(final int size) throws IOException {
+        this.segmentStart = this.position;
+        this.segment = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position,
+                Math.min(size, this.fileSize - this.position));
+    }
+
+    private void close() {
+        this.finished = true;
+        this.segment = null;
+        if (null != this.channel) {
+            try {
+                this.channel.close();
+            } catch (final IOException ignored) {
+                // nothing else can be done with a read-only channel
+            }
+            this.channel = null;
+        }
+    }
+
+    /**
+     * @return index of the first {@code '\n'} at or after {@code from}, or -1 if there is none in the buffer
+     */
+    /**
+     * Checks whether charset is known to encode every ASCII character as the same single byte and to never use bytes
+     * below {@code 0x80} as a part of a multi-byte sequence. Only UTF-8, US-ASCII, ISO-8859 and windows-125x
+     * encodings are accepted, other encodings may pass a byte check for line terminators and still split lines in
+     * the middle of a character.
+     *
+     * @param charset charset to check
+     * @return {@code true} if charset is ASCII-compatible
+     */
+    static boolean isAsciiCompatible(final Charset charset) {
+        final String name = charset.name();
+        return name.equalsIgnoreCase("UTF-8")
+                || name.equalsIgnoreCase("US-ASCII")
+                || name.regionMatches(true, 0, "ISO-8859-", 0, "ISO-8859-".length())
+                || name.matches("(?i)windows-125[0-8]");
+    }
+
+    private static int find(final ByteBuffer buffer, final int from) {
+        final int limit = buffer.limit();
+        for (int i = from; i < limit; i++) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * View over bytes of a line. ASCII lines are read directly from the buffer, other lines are decoded once, when
+     * their characters are accessed for the first time.
+     */
+    private static final class Line implements CharSequence {
+        private final Charset charset;
+        private ByteBuffer buffer;
+        private int start;
+        private int length;
+        private boolean scanned;
+        private CharBuffer decoded;
+
+        private Line(final Charset charset) {
+            this.charset = charset;
+        }
+
+        private Line(final Charset charset, final ByteBuffer buffer, final int start, final int length) {
+            this.charset = charset;
+            reset(buffer, start, length);
+        }
+
+        void reset(final ByteBuffer buffer, final int start, final int length) {
+            this.buffer = buffer;
+            this.start = start;
+            this.length = length;
+            this.scanned = false;
+            this.decoded = null;
+        }
+
+        @Override
+        public int length() {
+            return null == decode() ? this.length : this.decoded.length();
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (null != decode()) {
+                return this.decoded.charAt(index);
+            }
+            if (index < 0 || index >= this.length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+            return (char) this.buffer.get(this.start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            if (null != decode()) {
+                return this.decoded.subSequence(start, end);
+            }
+            if (start < 0 || end > this.length || start > end) {
+                throw new IndexOutOfBoundsException("[" + start + "; " + end + ")");
+            }
+            return new Line(this.charset, this.buffer, this.start + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            if (null != decode()) {
+                return this.decoded.toString();
+            }
+            final byte[] bytes = new byte[this.length];
+            for (int i = 0; i < this.length; i++) {
+                bytes[i] = this.buffer.get(this.start + i);
+            }
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        /**
+         * @return decoded characters or {@code null} if line consists only of ASCII characters
+         */
+        private CharBuffer decode() {
+            if (!this.scanned) {
+                this.scanned = true;
+                for (int i = 0; i < this.length; i++) {
+                    if (this.buffer.get(this.start + i) < 0) {
+                        final ByteBuffer bytes = this.buffer.duplicate();
+                        ((Buffer) bytes).limit(this.start + this.length);
+                        ((Buffer) bytes).position(this.start);
+                        this.decoded = this.charset.decode(bytes);
+                        break;
+                    }
+                }
+            }
+            return this.decoded;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Buffer which remembers elements pulled from an iterator, so that they can be read again by any number of readers.
+ * </p><p>
+ * Elements are stored in fixed size chunks, so growing the buffer never copies elements already stored. Readers pull
+ * new elements from the upstream iterator only when they go past the end of the buffer.
+ * </p><p>
+ * If a bound is set, only that many first elements are stored. The elements after the bound are passed to the reader
+ * which pulled them and are not stored, so any other reader trying to read them will fail.
+ * </p><p>
+ * This class is not thread-safe.
+ * </p>
+ *
+ * @param <E> type of elements
+ */
+final class Memo<E> {
+    private static final int CHUNK_SHIFT = 8;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final Iterator<E> upstream;
+    private final long bound;
+    private Object[][] chunks;
+    private long pulled;
+    private long cached;
+    private boolean exhausted;
+
+    /**
+     * @param upstream iterator to read elements from
+     * @param bound    maximum number of elements to store
+     */
+    Memo(final Iterator<E> upstream, final long bound) {
+        this.upstream = upstream;
+        this.bound = bound;
+        this.chunks = new Object[4][];
+        this.pulled = 0;
+        this.cached = 0;
+        this.exhausted = false;
+    }
+
+    /**
+     * @return new source which reads all the elements from the beginning
+     */
+    Source<E> reader() {
+        return new Reader();
+    }
+
+    @SuppressWarnings("unchecked")
+    private E get(final long index) {
+        return (E) this.chunks[(int) (index >>> CHUNK_SHIFT)][(int) (index & CHUNK_MASK)];
+    }
+
+    /**
+     * Checks whether element at specified index is available, pulling it from upstream if needed.
+     */
+    private boolean available(final long index) {
+        if (index < this.cached) {
+            return true;
+        }
+        if (index != this.pulled) {
+            throw new IllegalStateException("Element " + index + " was not memoized and is no longer available");
+        }
+        if (this.exhausted) {
+            return false;
+        }
+        if (!this.upstream.hasNext()) {
+            this.exhausted = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Pulls next element from upstream, storing it if bound is not reached yet.
+     */
+    private E pull() {
+        final E value = this.upstream.next();
+        if (this.cached == this.pulled && this.cached < this.bound) {
+            store(value);
+        }
+        this.pulled += 1;
+        return value;
+    }
+
+    private void store(final E value) {
+        final int chunk = (int) (this.cached >>> CHUNK_SHIFT);
+        if (chunk == this.chunks.length) {
+            this.chunks = Arrays.copyOf(this.chunks, chunk * 2);
+        }
+        if (null == this.chunks[chunk]) {
+            this.chunks[chunk] = new Object[(int) Math.min(CHUNK_SIZE, this.bound)];
+        }
+        this.chunks[chunk][(int) (this.cached & CHUNK_MASK)] = value;
+        this.cached += 1;
+    }
+
+    private final class Reader extends Source<E> {
+        private long position;
+
+        @Override
+        public boolean hasNext() {
+            return available(this.position);
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final long index = this.position++;
+            return index < Memo.this.cached ? get(index) : pull();
+        }
+
+        /**
+         * Stored elements are skipped without reading them.
+         */
+        @Override
+        long skip(final long n) {
+            final long stored = Math.max(0, Math.min(n, Memo.this.cached - this.position));
+            this.position += stored;
+            return stored + super.skip(n - stored);
+        }
+
+        /**
+         * Size is known only after upstream was read completely.
+         */
+        @Override
+        long size() {
+            return Memo.this.exhausted && Memo.this.pulled == Memo.this.cached
+                    ? Memo.this.cached - this.position
+                    : UNKNOWN_SIZE;
+        }
+
+        @Override
+        boolean drainTo(final Sink<? super E> sink) {
+            while (this.position < Memo.this.cached) {
+                if (!sink.accept(get(this.position++))) {
+                    return false;
+                }
+            }
+            return super.drainTo(sink);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * <p>
+ * Source which merges sorted sources into a single sorted sequence, choosing the smallest current element with a
+ * priority queue. Merging {@code n} elements of {@code k} sources takes {@code O(n log k)} time. Equal elements are
+ * taken from the source which comes first in the list, so the merge is stable.
+ * </p><p>
+ * First elements are read when the merge is accessed for the first time. When consumer stops early, all the sources
+ * which are not exhausted yet are cancelled.
+ * </p>
+ *
+ * @param <T> type of elements
+ */
+final class MergeSource<T> extends Source<T> {
+    private final List<? extends Source<? extends T>> sources;
+    private final PriorityQueue<Head<T>> heap;
+    private boolean started;
+
+    /**
+     * @param sources    sources sorted with the comparator
+     * @param comparator comparator defining the order
+     */
+    MergeSource(final List<? extends Source<? extends T>> sources, final Comparator<? super T> comparator) {
+        this.sources = sources;
+        this.heap = new PriorityQueue<Head<T>>(Math.max(1, sources.size()), new Comparator<Head<T>>() {
+            @Override
+            public int compare(final Head<T> left, final Head<T> right) {
+                final int result = comparator.compare(left.value, right.value);
+                return 0 != result ? result : left.index - right.index;
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        start();
+        return !this.heap.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Head<T> head = this.heap.poll();
+        final T result = head.value;
+        if (head.advance()) {
+            this.heap.add(head);
+        }
+        return result;
+    }
+
+    /**
+     * Size is known if sizes of all the sources are known.
+     */
+    @Override
+    long size() {
+        long size = 0;
+        if (this.started) {
+            for (final Head<T> head : this.heap) {
+                final long remaining = head.source.size();
+                if (remaining < 0) {
+                    return UNKNOWN_SIZE;
+                }
+                size += remaining + 1;
+            }
+        } else {
+            for (final Source<? extends T> source : this.sources) {
+                final long remaining = source.size();
+                if (remaining < 0) {
+                    return UNKNOWN_SIZE;
+                }
+                size += remaining;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    void cancel() {
+        if (this.started) {
+            for (final Head<T> head : this.heap) {
+                head.source.cancel();
+            }
+            this.heap.clear();
+        } else {
+            this.started = true;
+            for (final Source<? extends T> source : this.sources) {
+                source.cancel();
+            }
+        }
+    }
+
+    private void start() {
+        if (!this.started) {
+            this.started = true;
+            for (int i = 0; i < this.sources.size(); i++) {
+                final Head<T> head = new Head<T>(this.sources.get(i), i);
+                if (head.advance()) {
+                    this.heap.add(head);
+                }
+            }
+        }
+    }
+
+    /**
+     * Current element of one of the sources.
+     */
+    private static final class Head<T> {
+        private final Source<? extends T> source;
+        private final int index;
+        private T value;
+
+        private Head(final Source<? extends T> source, final int index) {
+            this.source = source;
+            this.index = index;
+        }
+
+        /**
+         * @return {@code true} if next element was read, {@code false} if source is exhausted
+         */
+        private boolean advance() {
+            if (this.source.hasNext()) {
+                this.value = this.source.next();
+                return true;
+            }
+            this.value = null;
+            return false;
+        }
+    }
+}
@@ -17,20 +17,97 @@
 package net.ninjacat.smooth.iterators;
 
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 
 /**
+ * <p>
  * Iterable that can host multiple {@link java.lang.Iterable}s and provide an {@link java.util.Iterator}
  * to walk them all.
+ * </p><p>
+ * By default iterables are walked one after another. Iterable created with {@link #sorted(Comparator, Iterable[])}
+ * merges already sorted iterables into a single sorted sequence instead. Iterable created with
+ * {@link #concurrent(ExecutorService, int, Iterable[])} reads all the iterables at the same time and returns elements
+ * in the order they arrive.
+ * </p>
  */
 public class MultiIterable<T> implements Iterable<T> {
     private final List<Iterable<T>> collections;
+    private final Comparator<? super T> comparator;
+    private final ExecutorService executor;
+    private final int bufferSize;
 
     public MultiIterable(final Iterable<T>... iterables) {
-        this.collections = new ArrayList<Iterable<T>>(Arrays.asList(iterables));
+        this(null, null, 0);
+        this.collections.addAll(Arrays.asList(iterables));
     }
 
     public MultiIterable() {
+        this(null, null, 0);
+    }
+
+    private MultiIterable(final Comparator<? super T> comparator, final ExecutorService executor,
+                          final int bufferSize) {
         this.collections = new ArrayList<Iterable<T>>();
+        this.comparator = comparator;
+        this.executor = executor;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * <p>
+     * Creates iterable which merges sorted iterables into a single sorted sequence. Each iterable must already be
+     * sorted with the same comparator, more iterables can be added with {@link #append(Iterable)}.
+     * </p><p>
+     * Iterator keeps current element of each iterable in a binary heap, so merging {@code n} elements of {@code k}
+     * iterables takes {@code O(n log k)} time and {@code O(k)} memory. Equal elements are returned in the order
+     * their iterables were added.
+     * </p>
+     *
+     * @param comparator comparator the iterables are sorted with
+     * @param iterables  sorted iterables
+     * @param <T>        type of elements
+     * @return Iterable over merged elements
+     */
+    @SafeVarargs
+    public static <T> MultiIterable<T> sorted(final Comparator<? super T> comparator, final Iterable<T>... iterables) {
+        final MultiIterable<T> result = new MultiIterable<T>(comparator, null, 0);
+        for (final Iterable<T> iterable : iterables) {
+            result.append(iterable);
+        }
+        return result;
+    }
+
+    /**
+     * <p>
+     * Creates iterable which reads all the iterables concurrently, each one in its own executor task, and returns
+     * their elements in the order they arrive. Order of elements of each iterable is kept, but elements of different
+     * iterables are interleaved. More iterables can be added with {@link #append(Iterable)}.
+     * </p><p>
+     * Tasks are started when the first element is requested and push elements into a shared queue of
+     * {@code bufferSize} elements, waiting while it is full. Exception thrown by any iterable is rethrown by the
+     * iterator and the other tasks are cancelled. When iterator is read by {@link Iter} which stops early, for example
+     * after {@link Iter#limit(long)}, all the tasks are cancelled. Tasks of an iterator which is abandoned before it is
+     * exhausted stop waiting for free space in the queue once the iterator is garbage collected.
+     * </p>
+     *
+     * @param executor   executor to read iterables on
+     * @param bufferSize maximum number of elements waiting to be read
+     * @param iterables  iterables to read
+     * @param <T>        type of elements
+     * @return Iterable over elements of all the iterables
+     * @throws IllegalArgumentException if buffer size is not positive
+     */
+    @SafeVarargs
+    public static <T> MultiIterable<T> concurrent(final ExecutorService executor, final int bufferSize,
+                                                  final Iterable<T>... iterables) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Buffer size must be positive");
+        }
+        final MultiIterable<T> result = new MultiIterable<T>(null, executor, bufferSize);
+        for (final Iterable<T> iterable : iterables) {
+            result.append(iterable);
+        }
+        return result;
     }
 
     public void append(final Iterable<T> iterable) {
@@ -39,6 +116,16 @@ public class MultiIterable<T> implements Iterable<T> {
 
     @Override
     public Iterator<T> iterator() {
+        if (null != this.executor) {
+            return new FanIn<T>(new ArrayList<Iterable<T>>(this.collections), this.executor, this.bufferSize);
+        }
+        if (null != this.comparator) {
+            final List<Source<T>> sources = new ArrayList<Source<T>>(this.collections.size());
+            for (final Iterable<T> iterable : this.collections) {
+                sources.add(Source.of(iterable.iterator()));
+            }
+            return new MergeSource<T>(sources, this.comparator);
+        }
         return new MultiIterator();
     }
 
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Function2;
+import net.ninjacat.smooth.functions.Predicate;
+import net.ninjacat.smooth.functions.Procedure;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <p>
+ * Parallel version of {@link Iter}, created with {@link Iter#parallel()}.
+ * </p><p>
+ * Terminal operations split the source into parts and process each part on a {@link ForkJoinPool}, then combine
+ * partial results. Collections, arrays and ranges created with {@link Iters#range(int, int)} can be split, any other
+ * source is processed in a single task.
+ * </p><p>
+ * Functions passed to {@link #map(Func)}, {@link #filter(Predicate)} and terminal operations will be called
+ * concurrently from several threads and must be thread-safe. Stages which group elements, like {@link Iter#batch(int)},
+ * group them within each part.
+ * </p><p>
+ * By default results are collected in the order of the source. {@link #unordered()} allows partial results to be
+ * collected in the order they become available, which avoids merging them in order.
+ * </p>
+ *
+ * @param <E> Type of the elements
+ */
+public class ParallelIter<E> {
+    private static final int MIN_PART_SIZE = 1024;
+    private static final int PARTS_PER_THREAD = 4;
+
+    private static volatile ForkJoinPool defaultPool;
+
+    private final Source<?> source;
+    private final Stage[] stages;
+    private final ForkJoinPool pool;
+    private final boolean ordered;
+
+    ParallelIter(final Source<?> source, final Stage[] stages, final ForkJoinPool pool, final boolean ordered) {
+        this.source = source;
+        this.stages = stages;
+        this.pool = null == pool ? getDefaultPool() : pool;
+        this.ordered = ordered;
+    }
+
+    private static ForkJoinPool getDefaultPool() {
+        if (null == defaultPool) {
+            synchronized (ParallelIter.class) {
+                if (null == defaultPool) {
+                    defaultPool = new ForkJoinPool();
+                }
+            }
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Maps all the values to other values using supplied function. Function may be called from several threads.
+     *
+     * @param func mapping function
+     * @param <R>  result type
+     * @return Parallel iterator of mapped values
+     */
+    public <R> ParallelIter<R> map(final Func<R, E> func) {
+        return new ParallelIter<R>(this.source, Stage.append(this.stages, Stage.map(func)), this.pool, this.ordered);
+    }
+
+    /**
+     * Filters out elements based on predicate. Predicate may be called from several threads.
+     *
+     * @param predicate function to verify element, should return {@code true} for elements to keep
+     * @return Parallel iterator of matching values
+     */
+    public ParallelIter<E> filter(final Predicate<E> predicate) {
+        return new ParallelIter<E>(this.source, Stage.append(this.stages, Stage.filter(predicate)), this.pool, this.ordered);
+    }
+
+    /**
+     * Allows terminal operations to ignore order of the source elements.
+     *
+     * @return Parallel iterator which does not preserve order of elements
+     */
+    public ParallelIter<E> unordered() {
+        return new ParallelIter<E>(this.source, this.stages, this.pool, false);
+    }
+
+    /**
+     * @return {@code true} if results will preserve order of the source elements
+     */
+    public boolean isOrdered() {
+        return this.ordered;
+    }
+
+    /**
+     * <p>
+     * Folds elements of each part with accumulator function, then combines partial results with combiner.
+     * </p><p>
+     * Starting value is used as initial value for every part, so it must be an identity for the combiner, for
+     * example {@code 0} for sum. When this iterator is ordered, partial results are combined in the order of parts,
+     * so combiner does not need to be commutative, only associative.
+     * </p>
+     *
+     * @param starting    identity value
+     * @param accumulator folding function
+     * @param combiner    function which combines two partial results
+     * @param <R>         type of the resulting value
+     * @return Result of the folding
+     */
+    public <R> R reduce(final R starting, final Function2<R, R, E> accumulator, final Function2<R, R, R> combiner) {
+        return execute(new Terminal<R>() {
+            @Override
+            R evaluate(final Source<?> part) {
+                final Sink.Reduce<R, E> reducer = new Sink.Reduce<R, E>(starting, accumulator);
+                Stage.run(ParallelIter.this.stages, part, reducer);
+                return reducer.getResult();
+            }
+
+            @Override
+            R combine(final R left, final R right) {
+                return combiner.apply(left, right);
+            }
+        });
+    }
+
+    /**
+     * @return {@link List} containing all the elements. Returned list is immutable
+     */
+    public List<E> toList() {
+        final Collection<List<E>> parts = this.ordered ? null : new ConcurrentLinkedQueue<List<E>>();
+        final Parts<E> result = execute(new Terminal<Parts<E>>() {
+            @Override
+            Parts<E> evaluate(final Source<?> part) {
+                final long size = Stage.size(ParallelIter.this.stages, part.size(), true);
+                final List<E> list = size >= 0 ? new ArrayList<E>((int) size) : new ArrayList<E>();
+                Stage.run(ParallelIter.this.stages, part, new Sink.ToCollection<E>(list));
+                if (null == parts) {
+                    return new Parts<E>(list);
+                }
+                parts.add(list);
+                return null;
+            }
+
+            @Override
+            Parts<E> combine(final Parts<E> left, final Parts<E> right) {
+                return null == left ? null : left.append(right);
+            }
+        });
+        return Collections.unmodifiableList(concat(null == result ? parts : result.lists));
+    }
+
+    /**
+     * @return {@link Set} containing all the elements. Returned set is immutable
+     */
+    public Set<E> toSet() {
+        final Set<E> result = execute(new Terminal<Set<E>>() {
+            @Override
+            Set<E> evaluate(final Source<?> part) {
+                final Set<E> set = new HashSet<E>();
+                Stage.run(ParallelIter.this.stages, part, new Sink.ToCollection<E>(set));
+                return set;
+            }
+
+            @Override
+            Set<E> combine(final Set<E> left, final Set<E> right) {
+                if (left.size() >= right.size()) {
+                    left.addAll(right);
+                    return left;
+                }
+                right.addAll(left);
+                return right;
+            }
+        });
+        return Collections.unmodifiableSet(result);
+    }
+
+    /**
+     * <p>
+     * Collects each part into a collection supplied by the collector, then merges partial collections with
+     * {@link Collector#combine(Collection, Collection)}. Each part allocates its collection once, presized to the
+     * size of the part when it is known.
+     * </p><p>
+     * When this iterator is ordered, partial collections are combined in the order of parts.
+     * </p>
+     *
+     * @param collector {@link Collector} which will perform collection
+     * @return {@link Collection} of all the elements
+     */
+    public Collection<E> collectWith(final Collector<E> collector) {
+        return execute(new Terminal<Collection<E>>() {
+            @Override
+            Collection<E> evaluate(final Source<?> part) {
+                final long size = Stage.size(ParallelIter.this.stages, part.size(), true);
+                final Collection<E> collection = collector.supply(size >= 0 && size <= Integer.MAX_VALUE
+                        ? (int) size : Collector.UNKNOWN_SIZE);
+                Stage.run(ParallelIter.this.stages, part, new Sink.ToCollection<E>(collection));
+                return collection;
+            }
+
+            @Override
+            Collection<E> combine(final Collection<E> left, final Collection<E> right) {
+                return collector.combine(left, right);
+            }
+        });
+    }
+
+    /**
+     * Calls specified {@link Procedure} for each element. Procedure will be called from several threads and in
+     * no particular order.
+     *
+     * @param executor {@link Procedure} to be executed on each element
+     */
+    public void forEach(final Procedure<E> executor) {
+        execute(new Terminal<Void>() {
+            @Override
+            Void evaluate(final Source<?> part) {
+                Stage.run(ParallelIter.this.stages, part, new Sink<E>() {
+                    @Override
+                    boolean accept(final E value) {
+                        executor.call(value);
+                        return true;
+                    }
+                });
+                return null;
+            }
+
+            @Override
+            Void combine(final Void left, final Void right) {
+                return null;
+            }
+        });
+    }
+
+    private <R> R execute(final Terminal<R> terminal) {
+        final long size = this.source.size();
+        final long partSize = Math.max(MIN_PART_SIZE, size / ((long) this.pool.getParallelism() * PARTS_PER_THREAD));
+        return this.pool.invoke(new PartTask<R>(this.source, terminal, partSize));
+    }
+
+    private static <E> List<E> concat(final Collection<List<E>> lists) {
+        long size = 0;
+        for (final List<E> list : lists) {
+            size += list.size();
+        }
+        final List<E> result = new ArrayList<E>((int) Math.min(size, Sink.ToArray.MAX_CAPACITY));
+        for (final List<E> list : lists) {
+            result.addAll(list);
+        }
+        return result;
+    }
+
+    /**
+     * Terminal operation executed on each part of the source
+     *
+     * @param <R> type of the result
+     */
+    private abstract static class Terminal<R> {
+        abstract R evaluate(Source<?> part);
+
+        abstract R combine(R left, R right);
+    }
+
+    private static final class PartTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final Source<?> source;
+        private final Terminal<R> terminal;
+        private final long partSize;
+
+        private PartTask(final Source<?> source, final Terminal<R> terminal, final long partSize) {
+            this.source = source;
+            this.terminal = terminal;
+            this.partSize = partSize;
+        }
+
+        @Override
+        protected R compute() {
+            if (this.source.size() > this.partSize) {
+                final Source<?> prefix = this.source.trySplit();
+                if (null != prefix) {
+                    final PartTask<R> left = new PartTask<R>(prefix, this.terminal, this.partSize);
+                    left.fork();
+                    final R right = new PartTask<R>(this.source, this.terminal, this.partSize).compute();
+                    return this.terminal.combine(left.join(), right);
+                }
+            }
+            return this.terminal.evaluate(this.source);
+        }
+    }
+
+    /**
+     * Partial lists collected in order. Appending parts does not copy elements, they are copied only once when
+     * the final list is built.
+     */
+    private static final class Parts<E> {
+        private final List<List<E>> lists;
+
+        private Parts(final List<E> list) {
+            this.lists = new ArrayList<List<E>>();
+            this.lists.add(list);
+        }
+
+        private Parts<E> append(final Parts<E> other) {
+            this.lists.addAll(other.lists);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>
+ * Source which reads elements of a rich iterator ahead in a background task.
+ * </p><p>
+ * When the first element is requested, a task is submitted to the executor. It pushes elements of the upstream
+ * iterator into a {@link Handoff} queue, waiting while the queue is full. Exception thrown by upstream is passed
+ * through the queue and rethrown to the consumer after all the elements read before it. If consumer stops before
+ * reading all the elements or is abandoned, the task is stopped.
+ * </p>
+ *
+ * @param <E> type of elements
+ */
+final class Prefetch<E> extends Source<E> {
+    private final Iter<E> upstream;
+    private final ExecutorService executor;
+    private final Handoff<E> handoff;
+    private final long size;
+    private boolean started;
+    private Object head;
+    private long consumed;
+
+    Prefetch(final Iter<E> upstream, final ExecutorService executor, final int bufferSize) {
+        this.upstream = upstream;
+        this.executor = executor;
+        this.handoff = new Handoff<E>(this, bufferSize);
+        this.size = upstream.size(true);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!this.started) {
+            this.started = true;
+            this.handoff.submit(this.executor, this.upstream);
+        }
+        if (null == this.head) {
+            this.head = this.handoff.take();
+        }
+        return Handoff.END != this.head;
+    }
+
+    @Override
+    public E next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final Object result = this.head;
+        this.head = null;
+        this.consumed += 1;
+        return this.handoff.unwrap(result);
+    }
+
+    @Override
+    long size() {
+        return this.size < 0 ? UNKNOWN_SIZE : this.size - this.consumed;
+    }
+
+    /**
+     * Stops the background task. Elements which are already in the queue are dropped.
+     */
+    @Override
+    void cancel() {
+        this.handoff.cancel();
+        this.head = Handoff.END;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Fixed-size binary record read from a file by {@link Iters#records(java.io.File, int)}.
+ * </p><p>
+ * Record is a view over the read buffer and the same instance is reused for all the records of the file, so it is
+ * only valid until next record is requested. Values are read directly from the buffer at the offsets relative to the
+ * start of the record, using byte order the file was opened with. Use {@link #toByteArray()} to keep the record.
+ * </p>
+ */
+public final class Record {
+    private final ByteBuffer buffer;
+    private final int size;
+    private int offset;
+
+    Record(final ByteBuffer buffer, final int size) {
+        this.buffer = buffer;
+        this.size = size;
+    }
+
+    void reset(final int offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * @return size of the record in bytes
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param index offset of the value in the record
+     * @return byte at the offset
+     * @throws IndexOutOfBoundsException if value does not fit into the record
+     */
+    public byte getByte(final int index) {
+        return this.buffer.get(position(index, 1));
+    }
+
+    /**
+     * @param index offset of the value in the record
+     * @return two byte value at the offset
+     * @throws IndexOutOfBoundsException if value does not fit into the record
+     */
+    public short getShort(final int index) {
+        return this.buffer.getShort(position(index, 2));
+    }
+
+    /**
+     * @param index offset of the value in the record
+     * @return four byte value at the offset
+     * @throws IndexOutOfBoundsException if value does not fit into the record
+     */
+    public int getInt(final int index) {
+        return this.buffer.getInt(position(index, 4));
+    }
+
+    /**
+     * @param index offset of the value in the record
+     * @return eight byte value at the offset
+     * @throws IndexOutOfBoundsException if value does not fit into the record
+     */
+    public long getLong(final int index) {
+        return this.buffer.getLong(position(index, 8));
+    }
+
+    /**
+     * @param index offset of the value in the record
+     * @return four byte floating point value at the offset
+     * @throws IndexOutOfBoundsException if value does not fit into the record
+     */
+    public float getFloat(final int index) {
+        return this.buffer.getFloat(position(index, 4));
+    }
+
+    /**
+     * @param index offset of the value in the record
+     * @return eight byte floating point value at the offset
+     * @throws IndexOutOfBoundsException if value does not fit into the record
+     */
+    public double getDouble(final int index) {
+        return this.buffer.getDouble(position(index, 8));
+    }
+
+    /**
+     * @return copy of the record bytes
+     */
+    public byte[] toByteArray() {
+        final byte[] result = new byte[this.size];
+        for (int i = 0; i < this.size; i++) {
+            result[i] = this.buffer.get(this.offset + i);
+        }
+        return result;
+    }
+
+    private int position(final int index, final int length) {
+        if (index < 0 || index > this.size - length) {
+            throw new IndexOutOfBoundsException("Cannot read " + length + " bytes at " + index
+                    + " from record of size " + this.size);
+        }
+        return this.offset + index;
+    }
+}
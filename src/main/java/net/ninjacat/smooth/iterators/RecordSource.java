@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Source of fixed-size records of a binary file.
+ * </p><p>
+ * File is read with a {@link FileChannel} in large blocks into a direct buffer. All the records are returned as the
+ * same {@link Record} view, which is moved over the buffer, so reading a file does not create any objects per record.
+ * </p><p>
+ * Channel is opened on the first access and closed when the file is read completely or iteration is stopped.
+ * Size of the file must be a multiple of the record size, truncated last record is reported as an error.
+ * </p>
+ */
+final class RecordSource extends Source<Record> {
+    /**
+     * Default size of a block read at once
+     */
+    static final int BLOCK_SIZE = 1 << 20;
+
+    private final File file;
+    private final int recordSize;
+    private final ByteBuffer buffer;
+    private final Record record;
+    private FileChannel channel;
+    private long consumed;
+    private boolean finished;
+
+    /**
+     * @param file       file to read
+     * @param recordSize size of a record in bytes
+     * @param order      byte order of values in records
+     * @param blockSize  number of bytes to read at once, rounded down to a multiple of the record size
+     */
+    RecordSource(final File file, final int recordSize, final ByteOrder order, final int blockSize) {
+        if (recordSize <= 0) {
+            throw new IllegalArgumentException("Record size must be positive");
+        }
+        this.file = file;
+        this.recordSize = recordSize;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(1, blockSize / recordSize) * recordSize).order(order);
+        ((Buffer) this.buffer).limit(0);
+        this.record = new Record(this.buffer, recordSize);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.buffer.remaining() >= this.recordSize || (this.finished ? checkTail() : fill());
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return advance();
+    }
+
+    @Override
+    boolean drainTo(final Sink<? super Record> sink) {
+        while (hasNext()) {
+            while (this.buffer.remaining() >= this.recordSize) {
+                if (!sink.accept(advance())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records which are already read are skipped in the buffer, the rest are skipped by moving channel position.
+     */
+    @Override
+    long skip(final long n) {
+        final long buffered = Math.min(n, this.buffer.remaining() / this.recordSize);
+        ((Buffer) this.buffer).position(this.buffer.position() + (int) (buffered * this.recordSize));
+        this.consumed += buffered * this.recordSize;
+        final long skipped = buffered + Math.min(n - buffered, Math.max(0, size()));
+        this.consumed += (skipped - buffered) * this.recordSize;
+        if (skipped > buffered && null != this.channel) {
+            try {
+                this.channel.position(this.consumed + this.buffer.remaining());
+            } catch (final IOException e) {
+                close();
+                throw new IterIOException("Failed to read " + this.file, e);
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Size is calculated from the length of the file, without opening it.
+     */
+    @Override
+    long size() {
+        return this.finished ? this.buffer.remaining() / this.recordSize
+                : (this.file.length() - this.consumed) / this.recordSize;
+    }
+
+    @Override
+    void cancel() {
+        close();
+    }
+
+    private Record advance() {
+        final int position = this.buffer.position();
+        this.record.reset(position);
+        ((Buffer) this.buffer).position(position + this.recordSize);
+        this.consumed += this.recordSize;
+        return this.record;
+    }
+
+    /**
+     * Reads next block of the file, keeping the bytes which are not consumed yet.
+     *
+     * @return {@code true} if at least one complete record is available
+     */
+    private boolean fill() {
+        int read = 0;
+        try {
+            if (null == this.channel) {
+                this.channel = FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+                this.channel.position(this.consumed);
+            }
+            this.buffer.compact();
+            while (this.buffer.hasRemaining() && read >= 0) {
+                read = this.channel.read(this.buffer);
+            }
+            ((Buffer) this.buffer).flip();
+        } catch (final IOException e) {
+            close();
+            throw new IterIOException("Failed to read " + this.file, e);
+        }
+        if (read < 0) {
+            close();
+        }
+        return this.buffer.remaining() >= this.recordSize || this.finished && checkTail();
+    }
+
+    /**
+     * Called when all complete records are consumed after the end of file.
+     *
+     * @return {@code false} if the file contained only complete records
+     * @throws IterIOException if the file ends with an incomplete record
+     */
+    private boolean checkTail() {
+        final int incomplete = this.buffer.remaining();
+        if (0 == incomplete) {
+            return false;
+        }
+        ((Buffer) this.buffer).position(this.buffer.limit());
+        throw new IterIOException("Failed to read " + this.file,
+                new EOFException("File ends with incomplete record of " + incomplete + " bytes"));
+    }
+
+    private void close() {
+        this.finished = true;
+        if (null != this.channel) {
+            try {
+                this.channel.close();
+            } catch (final IOException ignored) {
+                // nothing else can be done with a read-only channel
+            }
+            this.channel = null;
+        }
+    }
+}
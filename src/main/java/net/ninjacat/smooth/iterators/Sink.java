@@ -0,0 +1,411 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.Function2;
+import net.ninjacat.smooth.functions.ToDoubleFunc;
+
+import java.util.*;
+
+/**
+ * Receiver of elements pushed through {@link Iter} pipeline. Each stage of the pipeline exposes a sink which passes
+ * elements to the sink of the next stage, terminal operations are implemented as sinks too.
+ *
+ * @param <T> type of elements
+ */
+abstract class Sink<T> {
+
+    /**
+     * Accepts next element of the pipeline.
+     *
+     * @param value element
+     * @return {@code true} if more elements are wanted or {@code false} to stop iteration
+     */
+    abstract boolean accept(T value);
+
+    /**
+     * Called once before the first element is pushed.
+     *
+     * @param size exact number of elements which will be pushed or {@link Source#UNKNOWN_SIZE}
+     */
+    void begin(final long size) {
+    }
+
+    /**
+     * Called once after the last element was pushed or after iteration was stopped. Sinks which hold elements back
+     * should pass them downstream at this point.
+     */
+    void end() {
+    }
+
+    /**
+     * Sink of an intermediate stage which passes elements to the sink of the next stage. By default the size
+     * and the end of iteration are passed downstream unchanged.
+     */
+    abstract static class Chained<T> extends Sink<T> {
+        final Sink<Object> downstream;
+
+        Chained(final Sink<Object> downstream) {
+            this.downstream = downstream;
+        }
+
+        @Override
+        void begin(final long size) {
+            this.downstream.begin(size);
+        }
+
+        @Override
+        void end() {
+            this.downstream.end();
+        }
+    }
+
+    /**
+     * Sink which adds all elements to a collection
+     */
+    static final class ToCollection<T> extends Sink<T> {
+        private final Collection<T> collection;
+
+        ToCollection(final Collection<T> collection) {
+            this.collection = collection;
+        }
+
+        @Override
+        boolean accept(final T value) {
+            this.collection.add(value);
+            return true;
+        }
+    }
+
+    /**
+     * <p>
+     * Sink which writes elements directly into an array.
+     * </p><p>
+     * If number of elements is known exactly, initial array should have that length, so that no copying is required.
+     * If only upper bound is known the array never grows beyond it. Wrong size hints are tolerated, array will
+     * grow or will be trimmed as needed.
+     * </p>
+     */
+    static final class ToArray<T> extends Sink<T> {
+        private static final int MIN_CAPACITY = 16;
+        static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+        private final long bound;
+        private T[] buffer;
+        private int size;
+
+        /**
+         * @param initial array to write elements into
+         * @param bound   upper bound of the number of elements or {@link Source#UNKNOWN_SIZE}
+         */
+        ToArray(final T[] initial, final long bound) {
+            this.buffer = initial;
+            this.bound = bound;
+            this.size = 0;
+        }
+
+        /**
+         * Calculates initial capacity for a buffer.
+         *
+         * @param exact exact number of elements or {@link Source#UNKNOWN_SIZE}
+         * @param bound upper bound of number of elements or {@link Source#UNKNOWN_SIZE}
+         * @return initial capacity
+         */
+        static int initialCapacity(final long exact, final long bound) {
+            if (exact >= 0 && exact <= MAX_CAPACITY) {
+                return (int) exact;
+            }
+            return bound >= 0 ? (int) Math.min(bound, MIN_CAPACITY) : MIN_CAPACITY;
+        }
+
+        @Override
+        boolean accept(final T value) {
+            if (this.size == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, grow());
+            }
+            this.buffer[this.size++] = value;
+            return true;
+        }
+
+        /**
+         * @return array of elements, its length is equal to the number of elements
+         */
+        T[] toArray() {
+            return this.size == this.buffer.length ? this.buffer : Arrays.copyOf(this.buffer, this.size);
+        }
+
+        /**
+         * @return number of elements written into the array
+         */
+        int size() {
+            return this.size;
+        }
+
+        /**
+         * @return array elements were written into, it can be longer than number of elements
+         */
+        T[] buffer() {
+            return this.buffer;
+        }
+
+        private int grow() {
+            final int capacity = this.buffer.length;
+            if (capacity >= MAX_CAPACITY) {
+                throw new OutOfMemoryError("Too many elements to fit into array");
+            }
+            final int next = (int) Math.min(MAX_CAPACITY, Math.max(MIN_CAPACITY, 2L * capacity));
+            return this.bound > capacity ? (int) Math.min(next, this.bound) : next;
+        }
+    }
+
+    /**
+     * Sink which folds elements left
+     */
+    static final class Reduce<R, T> extends Sink<T> {
+        private final Function2<R, R, T> func;
+        private R result;
+
+        Reduce(final R starting, final Function2<R, R, T> func) {
+            this.result = starting;
+            this.func = func;
+        }
+
+        @Override
+        boolean accept(final T value) {
+            this.result = this.func.apply(this.result, value);
+            return true;
+        }
+
+        R getResult() {
+            return this.result;
+        }
+    }
+
+    /**
+     * Sink which finds the greatest element according to comparator. If several elements are equal, the first
+     * one is kept.
+     */
+    static final class Max<T> extends Sink<T> {
+        private final Comparator<? super T> comparator;
+        private boolean found;
+        private T result;
+
+        Max(final Comparator<? super T> comparator) {
+            this.comparator = comparator;
+        }
+
+        @Override
+        boolean accept(final T value) {
+            if (!this.found || this.comparator.compare(value, this.result) > 0) {
+                this.result = value;
+                this.found = true;
+            }
+            return true;
+        }
+
+        /**
+         * @return the greatest element
+         * @throws NoSuchElementException if there were no elements
+         */
+        T get() {
+            if (!this.found) {
+                throw new NoSuchElementException();
+            }
+            return this.result;
+        }
+    }
+
+    /**
+     * <p>
+     * Sink which keeps {@code k} greatest elements according to comparator.
+     * </p><p>
+     * Elements are kept in a binary min-heap, so the smallest of the kept elements is always at the root and each
+     * new element is compared to it first. Each element takes O(log k) time. Heap grows as needed up to {@code k}.
+     * </p>
+     */
+    static final class TopK<T> extends Sink<T> {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final int k;
+        private final Comparator<? super T> comparator;
+        private Object[] heap;
+        private int size;
+
+        TopK(final int k, final Comparator<? super T> comparator) {
+            this.k = k;
+            this.comparator = comparator;
+            this.heap = new Object[Math.min(k, INITIAL_CAPACITY)];
+        }
+
+        @Override
+        boolean accept(final T value) {
+            if (this.size < this.k) {
+                if (this.size == this.heap.length) {
+                    this.heap = Arrays.copyOf(this.heap, (int) Math.min(this.k, 2L * this.size));
+                }
+                siftUp(this.size++, value);
+            } else if (this.size > 0 && this.comparator.compare(value, at(0)) > 0) {
+                siftDown(value);
+            }
+            return true;
+        }
+
+        /**
+         * @return kept elements from the greatest to the smallest
+         */
+        @SuppressWarnings("unchecked")
+        List<T> toList() {
+            final T[] result = (T[]) Arrays.copyOf(this.heap, this.size);
+            Arrays.sort(result, Collections.reverseOrder(this.comparator));
+            return Arrays.asList(result);
+        }
+
+        @SuppressWarnings("unchecked")
+        private T at(final int index) {
+            return (T) this.heap[index];
+        }
+
+        private void siftUp(final int index, final T value) {
+            int child = index;
+            while (child > 0) {
+                final int parent = (child - 1) >>> 1;
+                if (this.comparator.compare(at(parent), value) <= 0) {
+                    break;
+                }
+                this.heap[child] = this.heap[parent];
+                child = parent;
+            }
+            this.heap[child] = value;
+        }
+
+        /**
+         * Replaces the root with new element and moves it down to its place.
+         */
+        private void siftDown(final T value) {
+            int parent = 0;
+            while (true) {
+                final int left = 2 * parent + 1;
+                if (left >= this.size) {
+                    break;
+                }
+                final int right = left + 1;
+                final int smallest = right < this.size && this.comparator.compare(at(right), at(left)) < 0 ? right : left;
+                if (this.comparator.compare(value, at(smallest)) <= 0) {
+                    break;
+                }
+                this.heap[parent] = this.heap[smallest];
+                parent = smallest;
+            }
+            this.heap[parent] = value;
+        }
+    }
+
+    /**
+     * <p>
+     * Sink which keeps {@code k} elements with the highest scores.
+     * </p><p>
+     * Same as {@link TopK}, but scores are calculated once for each element and kept in a primitive array next to
+     * the elements, so they are neither boxed nor recalculated during heap operations.
+     * </p>
+     */
+    static final class TopKByScore<T> extends Sink<T> {
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final int k;
+        private final ToDoubleFunc<? super T> score;
+        private Object[] elements;
+        private double[] scores;
+        private int size;
+
+        TopKByScore(final int k, final ToDoubleFunc<? super T> score) {
+            this.k = k;
+            this.score = score;
+            this.elements = new Object[Math.min(k, INITIAL_CAPACITY)];
+            this.scores = new double[this.elements.length];
+        }
+
+        @Override
+        boolean accept(final T value) {
+            final double valueScore = this.score.apply(value);
+            if (this.size < this.k) {
+                if (this.size == this.elements.length) {
+                    final int capacity = (int) Math.min(this.k, 2L * this.size);
+                    this.elements = Arrays.copyOf(this.elements, capacity);
+                    this.scores = Arrays.copyOf(this.scores, capacity);
+                }
+                siftUp(this.size++, value, valueScore);
+            } else if (this.size > 0 && Double.compare(valueScore, this.scores[0]) > 0) {
+                siftDown(value, valueScore);
+            }
+            return true;
+        }
+
+        /**
+         * Empties the heap, taking the lowest score each time.
+         *
+         * @return kept elements from the highest score to the lowest
+         */
+        @SuppressWarnings("unchecked")
+        List<T> toList() {
+            final Object[] result = new Object[this.size];
+            for (int i = this.size - 1; i >= 0; i--) {
+                result[i] = this.elements[0];
+                this.size -= 1;
+                siftDown(this.elements[this.size], this.scores[this.size]);
+            }
+            return Arrays.asList((T[]) result);
+        }
+
+        private void siftUp(final int index, final Object value, final double valueScore) {
+            int child = index;
+            while (child > 0) {
+                final int parent = (child - 1) >>> 1;
+                if (Double.compare(this.scores[parent], valueScore) <= 0) {
+                    break;
+                }
+                this.elements[child] = this.elements[parent];
+                this.scores[child] = this.scores[parent];
+                child = parent;
+            }
+            this.elements[child] = value;
+            this.scores[child] = valueScore;
+        }
+
+        /**
+         * Replaces the root with new element and moves it down to its place.
+         */
+        private void siftDown(final Object value, final double valueScore) {
+            int parent = 0;
+            while (true) {
+                final int left = 2 * parent + 1;
+                if (left >= this.size) {
+                    break;
+                }
+                final int right = left + 1;
+                final int smallest = right < this.size && Double.compare(this.scores[right], this.scores[left]) < 0 ? right : left;
+                if (Double.compare(valueScore, this.scores[smallest]) <= 0) {
+                    break;
+                }
+                this.elements[parent] = this.elements[smallest];
+                this.scores[parent] = this.scores[smallest];
+                parent = smallest;
+            }
+            this.elements[parent] = value;
+            this.scores[parent] = valueScore;
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.util.*;
+
+/**
+ * <p>
+ * Source of elements for {@link Iter} pipeline.
+ * </p><p>
+ * Source can be read as an ordinary {@link Iterator}, or it can push all remaining elements into a {@link Sink}
+ * with {@link #drainTo(Sink)}. Sources backed by arrays and lists implement the latter as a plain indexed loop.
+ * </p>
+ *
+ * @param <T> type of elements
+ */
+abstract class Source<T> implements Iterator<T> {
+    /**
+     * Value returned by {@link #size()} when number of remaining elements is unknown
+     */
+    static final long UNKNOWN_SIZE = -1;
+
+    /**
+     * Wraps iterator into a source. If iterator already is a source it is returned as is.
+     *
+     * @param iterator iterator to wrap
+     * @param <T>      type of elements
+     * @return source reading from iterator
+     */
+    static <T> Source<T> of(final Iterator<T> iterator) {
+        if (iterator instanceof Source) {
+            return (Source<T>) iterator;
+        }
+        return new IteratorSource<T>(iterator);
+    }
+
+    /**
+     * Creates source for a collection. Random access lists will be read by index.
+     *
+     * @param collection collection to read
+     * @param <T>        type of elements
+     * @return source over collection elements
+     */
+    static <T> Source<T> of(final Collection<T> collection) {
+        if (collection instanceof List && collection instanceof RandomAccess) {
+            return new ListSource<T>((List<T>) collection);
+        }
+        return new IteratorSource<T>(collection.iterator(), collection.size());
+    }
+
+    /**
+     * Pushes all remaining elements into the sink, until either source is exhausted or sink requests a stop.
+     *
+     * @param sink receiver of elements
+     * @return {@code true} if all the elements were consumed, {@code false} if sink requested to stop
+     */
+    boolean drainTo(final Sink<? super T> sink) {
+        while (hasNext()) {
+            if (!sink.accept(next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Discards up to {@code n} elements. Indexed sources jump straight to the new position.
+     *
+     * @param n number of elements to discard
+     * @return number of elements actually discarded, less than {@code n} if source was exhausted
+     */
+    long skip(final long n) {
+        long skipped = 0;
+        while (skipped < n && hasNext()) {
+            next();
+            skipped += 1;
+        }
+        return skipped;
+    }
+
+    /**
+     * Creates source which lazily discards first {@code n} elements of another source, just before its elements
+     * are requested for the first time.
+     *
+     * @param source source to skip elements of
+     * @param n      number of elements to skip
+     * @param <T>    type of elements
+     * @return source of the remaining elements
+     */
+    static <T> Source<T> skipping(final Source<T> source, final long n) {
+        return new SkippingSource<T>(source, n);
+    }
+
+    /**
+     * @return exact number of elements remaining in this source or {@link #UNKNOWN_SIZE}
+     */
+    long size() {
+        return UNKNOWN_SIZE;
+    }
+
+    /**
+     * <p>
+     * Splits off the first half of the remaining elements into a new source, this source will be left with the
+     * second half. Used to partition work for parallel execution.
+     * </p>
+     *
+     * @return source for the first half of remaining elements or {@code null} if this source cannot be split
+     */
+    Source<T> trySplit() {
+        return null;
+    }
+
+    /**
+     * Called when consumer stops reading before the source is exhausted, so that source can release resources
+     * or stop background work. No more elements will be requested after the call.
+     */
+    void cancel() {
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException(getClass().getCanonicalName() + " does not support remove()");
+    }
+
+    private static final class IteratorSource<T> extends Source<T> {
+        private final Iterator<T> iterator;
+        private long remaining;
+
+        private IteratorSource(final Iterator<T> iterator) {
+            this(iterator, UNKNOWN_SIZE);
+        }
+
+        private IteratorSource(final Iterator<T> iterator, final long size) {
+            this.iterator = iterator;
+            this.remaining = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            final T result = this.iterator.next();
+            if (this.remaining > 0) {
+                this.remaining -= 1;
+            }
+            return result;
+        }
+
+        /**
+         * Size is only known for iterators over collections, it is taken from collection when source is created.
+         */
+        @Override
+        long size() {
+            return this.remaining;
+        }
+
+        @Override
+        public void remove() {
+            this.iterator.remove();
+        }
+    }
+
+    private static final class ListSource<T> extends Source<T> {
+        private final List<T> list;
+        private int end;
+        private int position;
+
+        private ListSource(final List<T> list) {
+            this(list, 0, -1);
+        }
+
+        private ListSource(final List<T> list, final int from, final int end) {
+            this.list = list;
+            this.position = from;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.position < limit();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.list.get(this.position++);
+        }
+
+        @Override
+        long size() {
+            return limit() - this.position;
+        }
+
+        @Override
+        long skip(final long n) {
+            final int skipped = (int) Math.min(n, limit() - this.position);
+            this.position += skipped;
+            return skipped;
+        }
+
+        @Override
+        Source<T> trySplit() {
+            final int limit = limit();
+            final int middle = this.position + (limit - this.position) / 2;
+            if (middle == this.position) {
+                return null;
+            }
+            final Source<T> prefix = new ListSource<T>(this.list, this.position, middle);
+            this.position = middle;
+            this.end = limit;
+            return prefix;
+        }
+
+        @Override
+        boolean drainTo(final Sink<? super T> sink) {
+            final List<T> data = this.list;
+            final int size = limit();
+            for (int i = this.position; i < size; i++) {
+                if (!sink.accept(data.get(i))) {
+                    this.position = i + 1;
+                    return false;
+                }
+            }
+            this.position = size;
+            return true;
+        }
+
+        /**
+         * Until the list is split the source follows its current size, same as list iterator would.
+         */
+        private int limit() {
+            return this.end < 0 ? this.list.size() : this.end;
+        }
+    }
+
+    private static final class SkippingSource<T> extends Source<T> {
+        private final Source<T> source;
+        private long pending;
+
+        private SkippingSource(final Source<T> source, final long n) {
+            this.source = source;
+            this.pending = n;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return skipped().hasNext();
+        }
+
+        @Override
+        public T next() {
+            return skipped().next();
+        }
+
+        @Override
+        long skip(final long n) {
+            return skipped().skip(n);
+        }
+
+        /**
+         * Size is calculated without discarding the elements.
+         */
+        @Override
+        long size() {
+            final long size = this.source.size();
+            return size < 0 ? UNKNOWN_SIZE : Math.max(0, size - this.pending);
+        }
+
+        @Override
+        Source<T> trySplit() {
+            return skipped().trySplit();
+        }
+
+        @Override
+        boolean drainTo(final Sink<? super T> sink) {
+            return skipped().drainTo(sink);
+        }
+
+        @Override
+        void cancel() {
+            this.source.cancel();
+        }
+
+        @Override
+        public void remove() {
+            this.source.remove();
+        }
+
+        private Source<T> skipped() {
+            if (this.pending > 0) {
+                this.source.skip(this.pending);
+                this.pending = 0;
+            }
+            return this.source;
+        }
+    }
+}
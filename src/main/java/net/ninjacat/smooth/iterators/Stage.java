@@ -0,0 +1,832 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Func2;
+import net.ninjacat.smooth.functions.Predicate;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * <p>
+ * Single intermediate operation recorded by {@link Iter}.
+ * </p><p>
+ * Stages do not wrap iterators, instead each stage wraps the {@link Sink} of the next stage, so that the source can
+ * push elements through the whole pipeline in a single loop. Any stage can stop iteration by returning {@code false}
+ * from its sink.
+ * </p>
+ */
+abstract class Stage {
+
+    static final Stage[] NONE = new Stage[0];
+
+    /**
+     * Creates sink for this stage which passes processed elements to the downstream sink.
+     *
+     * @param downstream sink of the next stage
+     * @return sink of this stage
+     */
+    abstract Sink<Object> wrap(Sink<Object> downstream);
+
+    /**
+     * Calculates number of elements coming out of this stage.
+     *
+     * @param upstream number of elements coming into this stage, never negative
+     * @param exact    if {@code true} only exact size should be returned, otherwise upper bound is acceptable
+     * @return number of elements or {@link Source#UNKNOWN_SIZE} if it cannot be determined
+     */
+    long size(final long upstream, final boolean exact) {
+        return Source.UNKNOWN_SIZE;
+    }
+
+    /**
+     * Stages which depend on position of elements in the whole sequence, like {@link #limit(long)}, cannot be applied
+     * to parts of the sequence independently and have to be executed sequentially.
+     *
+     * @return {@code true} if this stage must see all the elements in order
+     */
+    boolean isSequential() {
+        return false;
+    }
+
+    /**
+     * Finds the last stage which must be executed sequentially.
+     *
+     * @param stages pipeline stages in order of application
+     * @return index of the last sequential stage or -1 if there are none
+     */
+    static int lastSequential(final Stage[] stages) {
+        for (int i = stages.length - 1; i >= 0; i--) {
+            if (stages[i].isSequential()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Builds chain of sinks for all the stages, ending with the terminal sink.
+     *
+     * @param stages   pipeline stages in order of application
+     * @param terminal sink receiving results of the last stage
+     * @return sink of the first stage
+     */
+    @SuppressWarnings("unchecked")
+    static Sink<Object> wrapAll(final Stage[] stages, final Sink<?> terminal) {
+        Sink<Object> sink = (Sink<Object>) terminal;
+        for (int i = stages.length - 1; i >= 0; i--) {
+            sink = stages[i].wrap(sink);
+        }
+        return sink;
+    }
+
+    /**
+     * Pushes all remaining elements of the source through the stages into the terminal sink, signalling beginning
+     * and end of iteration to all the sinks. If iteration is stopped by any sink, the source is cancelled.
+     *
+     * @param stages   pipeline stages in order of application
+     * @param source   source of elements
+     * @param terminal sink receiving results of the last stage
+     * @return {@code true} if all the elements were consumed, {@code false} if any sink requested to stop
+     */
+    static boolean run(final Stage[] stages, final Source<?> source, final Sink<?> terminal) {
+        final Sink<Object> sink = wrapAll(stages, terminal);
+        sink.begin(source.size());
+        final boolean completed = source.drainTo(sink);
+        if (!completed) {
+            source.cancel();
+        }
+        sink.end();
+        return completed;
+    }
+
+    /**
+     * Calculates number of elements coming out of the pipeline.
+     *
+     * @param stages pipeline stages in order of application
+     * @param size   number of elements in the source or {@link Source#UNKNOWN_SIZE}
+     * @param exact  if {@code true} only exact size is calculated, otherwise upper bound is acceptable
+     * @return number of elements or {@link Source#UNKNOWN_SIZE} if it cannot be determined
+     */
+    static long size(final Stage[] stages, final long size, final boolean exact) {
+        long result = size;
+        for (int i = 0; i < stages.length && result >= 0; i++) {
+            result = stages[i].size(result, exact);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Stage map(final Func<?, ?> func) {
+        return new MapStage((Func<Object, Object>) func);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Stage filter(final Predicate<?> predicate) {
+        return new FilterStage((Predicate<Object>) predicate);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Stage flatMap(final Func<? extends Iterable<?>, ?> func) {
+        return new FlatMapStage((Func<Iterable<?>, Object>) func);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Stage zip(final Iterable<?> other, final Func2<?, ?, ?> combiner) {
+        return new ZipStage(new Iterable<?>[]{other}, (Func2<Object, Object, Object>) combiner, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Stage zip(final Iterable<?>[] others, final Func<?, Object[]> combiner) {
+        return new ZipStage(others.clone(), null, (Func<Object, Object[]>) combiner);
+    }
+
+    static Stage sliding(final int size, final int step) {
+        return new SlidingStage(size, step);
+    }
+
+    static Stage batch(final int size, final boolean reuseBuffer) {
+        return new BatchStage(size, reuseBuffer);
+    }
+
+    static Stage limit(final long n) {
+        return new LimitStage(n);
+    }
+
+    static Stage skip(final long n) {
+        return new SkipStage(n);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Stage takeWhile(final Predicate<?> predicate) {
+        return new TakeWhileStage((Predicate<Object>) predicate);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Stage dropWhile(final Predicate<?> predicate) {
+        return new DropWhileStage((Predicate<Object>) predicate);
+    }
+
+    /**
+     * Creates a new array of stages with one more stage appended to the end.
+     *
+     * @param stages existing stages
+     * @param stage  stage to append
+     * @return new array of stages
+     */
+    static Stage[] append(final Stage[] stages, final Stage stage) {
+        final Stage[] result = new Stage[stages.length + 1];
+        System.arraycopy(stages, 0, result, 0, stages.length);
+        result[stages.length] = stage;
+        return result;
+    }
+
+    private static final class MapStage extends Stage {
+        private final Func<Object, Object> func;
+
+        private MapStage(final Func<Object, Object> func) {
+            this.func = func;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new Sink.Chained<Object>(downstream) {
+                @Override
+                boolean accept(final Object value) {
+                    return this.downstream.accept(MapStage.this.func.apply(value));
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            return upstream;
+        }
+    }
+
+    private static final class FilterStage extends Stage {
+        private final Predicate<Object> predicate;
+
+        private FilterStage(final Predicate<Object> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new Sink.Chained<Object>(downstream) {
+                @Override
+                void begin(final long size) {
+                    this.downstream.begin(Source.UNKNOWN_SIZE);
+                }
+
+                @Override
+                boolean accept(final Object value) {
+                    return !FilterStage.this.predicate.matches(value) || this.downstream.accept(value);
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            return exact ? Source.UNKNOWN_SIZE : upstream;
+        }
+    }
+
+    /**
+     * Pushes all the elements of inner iterables downstream. Lists and arrays are walked by index, rich iterators
+     * are drained through their own pipeline.
+     */
+    private static final class FlatMapStage extends Stage {
+        private final Func<Iterable<?>, Object> func;
+
+        private FlatMapStage(final Func<Iterable<?>, Object> func) {
+            this.func = func;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new FlatMapSink(downstream);
+        }
+
+        private final class FlatMapSink extends Sink.Chained<Object> {
+            private final Sink<Object> forward;
+            private boolean stopped;
+
+            private FlatMapSink(final Sink<Object> downstream) {
+                super(downstream);
+                this.forward = new Sink<Object>() {
+                    @Override
+                    boolean accept(final Object value) {
+                        FlatMapSink.this.stopped = !FlatMapSink.this.downstream.accept(value);
+                        return !FlatMapSink.this.stopped;
+                    }
+                };
+            }
+
+            @Override
+            void begin(final long size) {
+                this.downstream.begin(Source.UNKNOWN_SIZE);
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            boolean accept(final Object value) {
+                final Iterable<?> inner = FlatMapStage.this.func.apply(value);
+                if (inner instanceof List && inner instanceof RandomAccess) {
+                    final List<?> list = (List<?>) inner;
+                    final int size = list.size();
+                    for (int i = 0; i < size; i++) {
+                        if (!this.downstream.accept(list.get(i))) {
+                            return false;
+                        }
+                    }
+                } else if (inner instanceof ArrayIterable) {
+                    final Object[] array = ((ArrayIterable<?>) inner).array();
+                    for (int i = 0; i < array.length; i++) {
+                        if (!this.downstream.accept(array[i])) {
+                            return false;
+                        }
+                    }
+                } else if (inner instanceof Iter) {
+                    ((Iter<Object>) inner).drain(this.forward);
+                    return !this.stopped;
+                } else {
+                    final Iterator<?> iterator = inner.iterator();
+                    while (iterator.hasNext()) {
+                        if (!this.downstream.accept(iterator.next())) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Combines each element with elements at the same position in other iterables, stops as soon as any of them
+     * is exhausted.
+     * </p><p>
+     * Random access lists, arrays and ranges are read by index, other iterables are read with an iterator. Each
+     * terminal operation reads other iterables from the beginning.
+     * </p>
+     */
+    private static final class ZipStage extends Stage {
+        private final Iterable<?>[] others;
+        private final Func2<Object, Object, Object> pairCombiner;
+        private final Func<Object, Object[]> arrayCombiner;
+
+        private ZipStage(final Iterable<?>[] others, final Func2<Object, Object, Object> pairCombiner,
+                         final Func<Object, Object[]> arrayCombiner) {
+            this.others = others;
+            this.pairCombiner = pairCombiner;
+            this.arrayCombiner = arrayCombiner;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            final Cursor[] cursors = new Cursor[this.others.length];
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = Cursor.of(this.others[i]);
+            }
+            return new Sink.Chained<Object>(downstream) {
+                private final Object[] values = new Object[cursors.length + 1];
+
+                @Override
+                void begin(final long size) {
+                    this.downstream.begin(ZipStage.this.size(size, true));
+                }
+
+                @Override
+                boolean accept(final Object value) {
+                    if (!hasAll()) {
+                        return false;
+                    }
+                    final Object result;
+                    if (null != ZipStage.this.pairCombiner) {
+                        result = ZipStage.this.pairCombiner.apply(value, cursors[0].next());
+                    } else {
+                        this.values[0] = value;
+                        for (int i = 0; i < cursors.length; i++) {
+                            this.values[i + 1] = cursors[i].next();
+                        }
+                        result = ZipStage.this.arrayCombiner.apply(this.values);
+                    }
+                    return this.downstream.accept(result) && hasAll();
+                }
+
+                private boolean hasAll() {
+                    for (final Cursor cursor : cursors) {
+                        if (!cursor.hasNext()) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            long result = upstream;
+            for (final Iterable<?> other : this.others) {
+                final long size = Cursor.sizeOf(other);
+                if (size >= 0) {
+                    result = result < 0 ? (exact ? Source.UNKNOWN_SIZE : size) : Math.min(result, size);
+                } else if (exact) {
+                    return Source.UNKNOWN_SIZE;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        boolean isSequential() {
+            return true;
+        }
+    }
+
+    /**
+     * Sequential reader of an iterable which avoids creating an iterator when elements can be accessed by index.
+     */
+    private abstract static class Cursor {
+        abstract boolean hasNext();
+
+        abstract Object next();
+
+        static Cursor of(final Iterable<?> iterable) {
+            if (iterable instanceof List && iterable instanceof RandomAccess) {
+                final List<?> list = (List<?>) iterable;
+                return new Cursor() {
+                    private int position;
+
+                    @Override
+                    boolean hasNext() {
+                        return this.position < list.size();
+                    }
+
+                    @Override
+                    Object next() {
+                        return list.get(this.position++);
+                    }
+                };
+            } else if (iterable instanceof ArrayIterable) {
+                final Object[] array = ((ArrayIterable<?>) iterable).array();
+                return new Cursor() {
+                    private int position;
+
+                    @Override
+                    boolean hasNext() {
+                        return this.position < array.length;
+                    }
+
+                    @Override
+                    Object next() {
+                        return array[this.position++];
+                    }
+                };
+            } else if (iterable instanceof IntRange) {
+                final IntRange range = (IntRange) iterable;
+                return new Cursor() {
+                    private long position;
+
+                    @Override
+                    boolean hasNext() {
+                        return this.position < range.count();
+                    }
+
+                    @Override
+                    Object next() {
+                        return range.get(this.position++);
+                    }
+                };
+            } else if (iterable instanceof LongRange) {
+                final LongRange range = (LongRange) iterable;
+                return new Cursor() {
+                    private long position;
+
+                    @Override
+                    boolean hasNext() {
+                        return this.position < range.count();
+                    }
+
+                    @Override
+                    Object next() {
+                        return range.get(this.position++);
+                    }
+                };
+            }
+            final Iterator<?> iterator = iterable.iterator();
+            return new Cursor() {
+                @Override
+                boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                Object next() {
+                    return iterator.next();
+                }
+            };
+        }
+
+        /**
+         * @return number of elements in iterable, if it is known without iterating, or {@link Source#UNKNOWN_SIZE}
+         */
+        static long sizeOf(final Iterable<?> iterable) {
+            if (iterable instanceof Collection) {
+                return ((Collection<?>) iterable).size();
+            } else if (iterable instanceof ArrayIterable) {
+                return ((ArrayIterable<?>) iterable).array().length;
+            } else if (iterable instanceof IntRange) {
+                return ((IntRange) iterable).count();
+            } else if (iterable instanceof LongRange) {
+                return ((LongRange) iterable).count();
+            }
+            return Source.UNKNOWN_SIZE;
+        }
+    }
+
+    /**
+     * Emits windows over a ring buffer. The same window instance is emitted every time, it is moved along
+     * the buffer, so elements are never copied.
+     */
+    private static final class SlidingStage extends Stage {
+        private final int size;
+        private final int step;
+
+        private SlidingStage(final int size, final int step) {
+            this.size = size;
+            this.step = step;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new Sink.Chained<Object>(downstream) {
+                private final Object[] ring = new Object[SlidingStage.this.size];
+                private final Window window = new Window(this.ring);
+                private int head;
+                private int filled;
+                private int gap;
+
+                @Override
+                void begin(final long size) {
+                    this.downstream.begin(SlidingStage.this.size(size, true));
+                }
+
+                @Override
+                boolean accept(final Object value) {
+                    if (this.gap > 0) {
+                        this.gap -= 1;
+                        return true;
+                    }
+                    final int capacity = this.ring.length;
+                    this.ring[(this.head + this.filled) % capacity] = value;
+                    this.filled += 1;
+                    if (this.filled < capacity) {
+                        return true;
+                    }
+                    this.window.start = this.head;
+                    if (SlidingStage.this.step < capacity) {
+                        this.head = (this.head + SlidingStage.this.step) % capacity;
+                        this.filled -= SlidingStage.this.step;
+                    } else {
+                        this.head = 0;
+                        this.filled = 0;
+                        this.gap = SlidingStage.this.step - capacity;
+                    }
+                    return this.downstream.accept(this.window);
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            if (upstream < 0) {
+                return Source.UNKNOWN_SIZE;
+            }
+            return upstream < this.size ? 0 : (upstream - this.size) / this.step + 1;
+        }
+
+        @Override
+        boolean isSequential() {
+            return true;
+        }
+    }
+
+    /**
+     * Read-only view of a ring buffer, starting at specified position and covering whole buffer.
+     */
+    private static final class Window extends AbstractList<Object> implements RandomAccess {
+        private final Object[] ring;
+        private int start;
+
+        private Window(final Object[] ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public Object get(final int index) {
+            if (index < 0 || index >= this.ring.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.ring.length);
+            }
+            return this.ring[(this.start + index) % this.ring.length];
+        }
+
+        @Override
+        public int size() {
+            return this.ring.length;
+        }
+    }
+
+    private static final class BatchStage extends Stage {
+        private final int batchSize;
+        private final boolean reuseBuffer;
+
+        private BatchStage(final int batchSize, final boolean reuseBuffer) {
+            this.batchSize = batchSize;
+            this.reuseBuffer = reuseBuffer;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new Sink.Chained<Object>(downstream) {
+                private long remaining = Source.UNKNOWN_SIZE;
+                private List<Object> batch;
+                private boolean emitted;
+                private boolean stopped;
+
+                @Override
+                void begin(final long size) {
+                    this.remaining = size;
+                    this.downstream.begin(size < 0 ? Source.UNKNOWN_SIZE : batches(size));
+                }
+
+                @Override
+                boolean accept(final Object value) {
+                    if (null == this.batch) {
+                        this.batch = new ArrayList<Object>(capacity());
+                    } else if (this.emitted) {
+                        this.batch.clear();
+                        this.emitted = false;
+                    }
+                    this.batch.add(value);
+                    return this.batch.size() < BatchStage.this.batchSize || emit();
+                }
+
+                @Override
+                void end() {
+                    if (!this.stopped && null != this.batch && !this.emitted) {
+                        emit();
+                    }
+                    this.downstream.end();
+                }
+
+                private boolean emit() {
+                    final List<Object> full = this.batch;
+                    if (this.remaining > 0) {
+                        this.remaining -= full.size();
+                    }
+                    if (BatchStage.this.reuseBuffer) {
+                        this.emitted = true;
+                    } else {
+                        this.batch = null;
+                    }
+                    this.stopped = !this.downstream.accept(full);
+                    return !this.stopped;
+                }
+
+                /**
+                 * When number of elements is known, the last batch is allocated with exact size
+                 */
+                private int capacity() {
+                    return this.remaining >= 0 ? (int) Math.min(this.remaining, BatchStage.this.batchSize) : BatchStage.this.batchSize;
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            return batches(upstream);
+        }
+
+        private long batches(final long elements) {
+            return elements / this.batchSize + (0 == elements % this.batchSize ? 0 : 1);
+        }
+    }
+
+    /**
+     * Passes through first {@code n} elements and stops iteration as soon as the last of them is accepted,
+     * so no extra element is pulled from upstream.
+     */
+    private static final class LimitStage extends Stage {
+        private final long limit;
+
+        private LimitStage(final long limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new Sink.Chained<Object>(downstream) {
+                private long count;
+
+                @Override
+                void begin(final long size) {
+                    this.downstream.begin(LimitStage.this.size(size, true));
+                }
+
+                @Override
+                boolean accept(final Object value) {
+                    if (this.count >= LimitStage.this.limit) {
+                        return false;
+                    }
+                    this.count += 1;
+                    return this.downstream.accept(value) && this.count < LimitStage.this.limit;
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            return upstream < 0 ? Source.UNKNOWN_SIZE : Math.min(upstream, this.limit);
+        }
+
+        @Override
+        boolean isSequential() {
+            return true;
+        }
+    }
+
+    private static final class SkipStage extends Stage {
+        private final long skip;
+
+        private SkipStage(final long skip) {
+            this.skip = skip;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new Sink.Chained<Object>(downstream) {
+                private long skipped;
+
+                @Override
+                void begin(final long size) {
+                    this.downstream.begin(SkipStage.this.size(size, true));
+                }
+
+                @Override
+                boolean accept(final Object value) {
+                    if (this.skipped < SkipStage.this.skip) {
+                        this.skipped += 1;
+                        return true;
+                    }
+                    return this.downstream.accept(value);
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            return upstream < 0 ? Source.UNKNOWN_SIZE : Math.max(0, upstream - this.skip);
+        }
+
+        @Override
+        boolean isSequential() {
+            return true;
+        }
+    }
+
+    private static final class TakeWhileStage extends Stage {
+        private final Predicate<Object> predicate;
+
+        private TakeWhileStage(final Predicate<Object> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new Sink.Chained<Object>(downstream) {
+                @Override
+                void begin(final long size) {
+                    this.downstream.begin(Source.UNKNOWN_SIZE);
+                }
+
+                @Override
+                boolean accept(final Object value) {
+                    return TakeWhileStage.this.predicate.matches(value) && this.downstream.accept(value);
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            return exact ? Source.UNKNOWN_SIZE : upstream;
+        }
+
+        @Override
+        boolean isSequential() {
+            return true;
+        }
+    }
+
+    private static final class DropWhileStage extends Stage {
+        private final Predicate<Object> predicate;
+
+        private DropWhileStage(final Predicate<Object> predicate) {
+            this.predicate = predicate;
+        }
+
+        @Override
+        Sink<Object> wrap(final Sink<Object> downstream) {
+            return new Sink.Chained<Object>(downstream) {
+                private boolean dropping = true;
+
+                @Override
+                void begin(final long size) {
+                    this.downstream.begin(Source.UNKNOWN_SIZE);
+                }
+
+                @Override
+                boolean accept(final Object value) {
+                    if (this.dropping && DropWhileStage.this.predicate.matches(value)) {
+                        return true;
+                    }
+                    this.dropping = false;
+                    return this.downstream.accept(value);
+                }
+            };
+        }
+
+        @Override
+        long size(final long upstream, final boolean exact) {
+            return exact ? Source.UNKNOWN_SIZE : upstream;
+        }
+
+        @Override
+        boolean isSequential() {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.iterators;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Splits one iterator into several readers, each of which returns all the elements of the iterator.
+ * </p><p>
+ * Elements are kept in a ring buffer until every reader has read them, so buffer only holds elements which the
+ * slowest reader has not consumed yet, slots consumed by all the readers are cleared. Readers which are exhausted or
+ * stopped early do not hold the buffer, when all of them stop early upstream is cancelled.
+ * </p><p>
+ * Reader which would get ahead of the slowest one by more than the size of the buffer blocks until the slowest reader
+ * is read further by another thread, so readers which diverge further than that must be read concurrently. Reading
+ * the slower readers from the blocked thread never happens, single thread has to keep readers within the buffer size
+ * of each other or use a terminal operation which folds several results in one pass instead.
+ * </p><p>
+ * Upstream is read by one reader at a time outside of the lock, so readers which have buffered elements are not held
+ * by a slow upstream.
+ * </p>
+ *
+ * @param <E> type of elements
+ */
+final class Tee<E> {
+    private final Iterator<E> upstream;
+    private final Source<?> source;
+    private final Object[] buffer;
+    private final long[] positions;
+    private final boolean[] active;
+    private int remaining;
+    private long pulled;
+    private boolean pulling;
+    private boolean nextReady;
+    private boolean exhausted;
+    private RuntimeException failure;
+
+    /**
+     * @param upstream   iterator to read elements from
+     * @param source     source of the upstream pipeline, cancelled when all readers stop early
+     * @param readers    number of readers
+     * @param bufferSize maximum number of elements kept for slower readers
+     */
+    Tee(final Iterator<E> upstream, final Source<?> source, final int readers, final int bufferSize) {
+        this.upstream = upstream;
+        this.source = source;
+        this.buffer = new Object[bufferSize];
+        this.positions = new long[readers];
+        this.active = new boolean[readers];
+        Arrays.fill(this.active, true);
+        this.remaining = readers;
+    }
+
+    /**
+     * @param index index of the reader
+     * @return source reading elements for the reader
+     */
+    Source<E> reader(final int index) {
+        return new Reader(index);
+    }
+
+    private boolean available(final int index) {
+        while (claim(index)) {
+            pull();
+        }
+        return isBuffered(index);
+    }
+
+    /**
+     * Waits until the reader has a buffered element, is finished or may read upstream. Upstream can be checked for
+     * the next element while the buffer is full, so readers see the end of upstream without waiting for slower ones.
+     *
+     * @return {@code true} if the reader has to read next element of upstream
+     */
+    private synchronized boolean claim(final int index) {
+        while (this.active[index] && this.positions[index] == this.pulled) {
+            if (null != this.failure) {
+                throw this.failure;
+            }
+            if (this.exhausted) {
+                close(index);
+                return false;
+            }
+            if (!this.pulling && (!this.nextReady || this.pulled - slowest() < this.buffer.length)) {
+                this.pulling = true;
+                return true;
+            }
+            try {
+                wait();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for slower readers", e);
+            }
+        }
+        return false;
+    }
+
+    private synchronized boolean isBuffered(final int index) {
+        return this.active[index] && this.positions[index] < this.pulled;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E take(final int index) {
+        if (!available(index)) {
+            throw new NoSuchElementException();
+        }
+        synchronized (this) {
+            final long position = this.positions[index];
+            final E value = (E) this.buffer[(int) (position % this.buffer.length)];
+            final boolean wasSlowest = position == slowest();
+            this.positions[index] = position + 1;
+            if (wasSlowest) {
+                release(position);
+                notifyAll();
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Reads next element of upstream into the buffer, must only be called after {@link #claim(int)} returned
+     * {@code true}. Only the reader which claimed upstream changes {@link #nextReady}.
+     */
+    private void pull() {
+        try {
+            if (this.nextReady || this.upstream.hasNext()) {
+                if (reserve()) {
+                    append(this.upstream.next());
+                }
+            } else {
+                finish(null);
+            }
+        } catch (final RuntimeException e) {
+            finish(e);
+        } finally {
+            synchronized (this) {
+                this.pulling = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if there is a free slot for the next element, otherwise remembers that upstream has it
+     */
+    private synchronized boolean reserve() {
+        this.nextReady = this.pulled - slowest() >= this.buffer.length;
+        return !this.nextReady;
+    }
+
+    private synchronized void append(final E value) {
+        if (!this.exhausted) {
+            this.buffer[(int) (this.pulled % this.buffer.length)] = value;
+            this.pulled += 1;
+        }
+    }
+
+    private synchronized void finish(final RuntimeException error) {
+        if (null == error) {
+            this.exhausted = true;
+        } else {
+            this.failure = error;
+        }
+    }
+
+    /**
+     * @return position of the slowest active reader
+     */
+    private long slowest() {
+        long result = this.pulled;
+        for (int i = 0; i < this.positions.length; i++) {
+            if (this.active[i] && this.positions[i] < result) {
+                result = this.positions[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clears slots which all the active readers have already read.
+     *
+     * @param from position of the slowest reader before it moved
+     */
+    private void release(final long from) {
+        final long to = slowest();
+        for (long position = from; position < to; position++) {
+            this.buffer[(int) (position % this.buffer.length)] = null;
+        }
+    }
+
+    private synchronized void close(final int index) {
+        if (this.active[index]) {
+            final long from = slowest();
+            this.active[index] = false;
+            this.remaining -= 1;
+            release(from);
+            notifyAll();
+        }
+    }
+
+    private synchronized void cancel(final int index) {
+        close(index);
+        if (0 == this.remaining && !this.exhausted) {
+            this.exhausted = true;
+            this.source.cancel();
+        }
+    }
+
+    private final class Reader extends Source<E> {
+        private final int index;
+
+        private Reader(final int index) {
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return available(this.index);
+        }
+
+        @Override
+        public E next() {
+            return take(this.index);
+        }
+
+        @Override
+        void cancel() {
+            Tee.this.cancel(this.index);
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2014 Oleksiy Voronin <ovoronin@gmail.com>
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package net.ninjacat.smooth.concurrent;
+
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Function2;
+import net.ninjacat.smooth.functions.Predicate;
+import net.ninjacat.smooth.functions.Provider;
+import net.ninjacat.smooth.iterators.Iters;
+import net.ninjacat.smooth.utils.Try;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class AsyncIterTest {
+
+    private static final Func<Integer, Integer> SQUARE = new Func<Integer, Integer>() {
+        @Override
+        public Integer apply(final Integer value) {
+            return value * value;
+        }
+    };
+
+    private static final Predicate<Integer> EVEN = new Predicate<Integer>() {
+        @Override
+        public boolean matches(final Integer value) {
+            return value % 2 == 0;
+        }
+    };
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() throws Exception {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldCollectAllElements() throws Exception {
+        final List<Integer> source = Iters.range(1000).toList();
+
+        final Try<List<Integer>> result = AsyncIter.of(source, this.executor).toList().getResult();
+
+        assertThat(result.getValue(), is(source));
+    }
+
+    @Test
+    public void shouldMapAndFilterElements() throws Exception {
+        final Try<List<Integer>> result = AsyncIter.of(Iters.range(10), this.executor)
+                .filter(EVEN).map(SQUARE).toList().getResult();
+
+        assertThat(result.getValue(), is(Arrays.asList(0, 4, 16, 36, 64)));
+    }
+
+    @Test
+    public void shouldReduceElements() throws Exception {
+        final Try<Integer> result = AsyncIter.of(Iters.range(1, 301), this.executor)
+                .reduce(0, new Function2<Integer, Integer, Integer>() {
+                    @Override
+                    public Integer apply(final Integer sum, final Integer value) {
+                        return sum + value;
+                    }
+                }).getResult();
+
+        assertThat(result.getValue(), is(45150));
+    }
+
+    @Test
+    public void shouldDeliverOnlyRequestedElements() throws Exception {
+        final AtomicInteger read = new AtomicInteger();
+        final Iterable<Integer> source = new Iterable<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new Iterator<Integer>() {
+                    @Override
+                    public boolean hasNext() {
+                        return true;
+                    }
+
+                    @Override
+                    public Integer next() {
+                        return read.incrementAndGet();
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        final List<Integer> received = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch latch = new CountDownLatch(3);
+
+        AsyncIter.of(source, this.executor).subscribe(new Subscriber<Integer>() {
+            @Override
+            public void onSubscribe(final Subscription subscription) {
+                subscription.request(3);
+            }
+
+            @Override
+            public void onNext(final Integer element) {
+                received.add(element);
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(final Throwable error) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        latch.await(5, TimeUnit.SECONDS);
+        Thread.sleep(50);
+
+        assertThat(received, is(Arrays.asList(1, 2, 3)));
+        assertThat(read.get(), is(3));
+    }
+
+    @Test
+    public void shouldKeepOrderOfAsyncResults() throws Exception {
+        final Try<List<Integer>> result = AsyncIter.of(Iters.range(20), this.executor)
+                .mapAsync(new Func<Future<Integer>, Integer>() {
+                    @Override
+                    public Future<Integer> apply(final Integer value) {
+                        return new Future<Integer>(AsyncIterTest.this.executor).doIt(new Callable<Integer>() {
+                            @Override
+                            public Integer call() throws Exception {
+                                Thread.sleep((20 - value) % 5);
+                                return value * 10;
+                            }
+                        });
+                    }
+                }, 4).toList().getResult();
+
+        assertThat(result.getValue(), is(Iters.range(0, 200, 10).toList()));
+    }
+
+    @Test
+    public void shouldLimitAsyncConversionsInFlight() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final ExecutorService workers = Executors.newCachedThreadPool();
+        try {
+            final Try<List<Integer>> result = AsyncIter.of(Iters.range(50), this.executor)
+                    .mapAsync(new Func<Future<Integer>, Integer>() {
+                        @Override
+                        public Future<Integer> apply(final Integer value) {
+                            return new Future<Integer>(workers).doIt(new Callable<Integer>() {
+                                @Override
+                                public Integer call() throws Exception {
+                                    final int now = running.incrementAndGet();
+                                    synchronized (maxRunning) {
+                                        maxRunning.set(Math.max(maxRunning.get(), now));
+                                    }
+                                    Thread.sleep(1);
+                                    running.decrementAndGet();
+                                    return value;
+                                }
+                            });
+                        }
+                    }, 3).toList().getResult();
+
+            assertThat(result.getValue().size(), is(50));
+            assertThat(maxRunning.get() <= 3, is(true));
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldReadResultsOfFutures() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+
+        final Try<List<Integer>> result = AsyncIter.fromFutures(new Provider<Future<Integer>>() {
+            @Override
+            public Future<Integer> get() {
+                final int value = counter.getAndIncrement();
+                if (value == 5) {
+                    return null;
+                }
+                return new Future<Integer>(AsyncIterTest.this.executor).doIt(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        return value;
+                    }
+                });
+            }
+        }).toList().getResult();
+
+        assertThat(result.getValue(), is(Arrays.asList(0, 1, 2, 3, 4)));
+    }
+
+    @Test
+    public void shouldReportFailureOfConversion() throws Exception {
+        final Try<List<Integer>> result = AsyncIter.of(Iters.range(10), this.executor)
+                .map(new Func<Integer, Integer>() {
+                    @Override
+                    public Integer apply(final Integer value) {
+                        if (value == 5) {
+                            throw new IllegalStateException("boom");
+                        }
+                        return value;
+                    }
+                }).toList().getResult();
+
+        assertThat(result.isSuccessful(), is(false));
+        assertThat(result.getFailure(), instanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    public void shouldReportFailureOfFuture() throws Exception {
+        final Try<List<Integer>> result = AsyncIter.of(Iters.range(10), this.executor)
+                .mapAsync(new Func<Future<Integer>, Integer>() {
+                    @Override
+                    public Future<Integer> apply(final Integer value) {
+                        return new Future<Integer>(AsyncIterTest.this.executor).doIt(new Callable<Integer>() {
+                            @Override
+                            public Integer call() throws Exception {
+                                if (value == 7) {
+                                    throw new IllegalStateException("boom");
+                                }
+                                return value;
+                            }
+                        });
+                    }
+                }, 2).toList().getResult();
+
+        assertThat(result.isSuccessful(), is(false));
+        assertThat(result.getFailure(), instanceOf(IllegalStateException.class));
+    }
+}
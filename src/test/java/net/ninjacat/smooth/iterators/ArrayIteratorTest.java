@@ -3,6 +3,7 @@ package net.ninjacat.smooth.iterators;
 import org.junit.Test;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
@@ -24,4 +25,25 @@ public class ArrayIteratorTest {
         assertThat(iterator.hasNext(), is(false));
     }
 
+    @Test(expected = NoSuchElementException.class)
+    public void shouldFailToReadPastEndOfArray() throws Exception {
+        final Iterator<String> iterator = Iter.of("a", "b").iterator();
+
+        iterator.next();
+        iterator.next();
+        iterator.next();
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void shouldFailToReadPastEndOfSplitPrefix() throws Exception {
+        final ArrayIterator<Integer> iterator = ArrayIterator.fromArray(new Integer[]{1, 2, 3, 4});
+
+        final Source<Integer> prefix = iterator.trySplit();
+
+        assertThat(prefix.next(), is(1));
+        assertThat(prefix.next(), is(2));
+        assertThat(prefix.hasNext(), is(false));
+        prefix.next();
+    }
+
 }
\ No newline at end of file
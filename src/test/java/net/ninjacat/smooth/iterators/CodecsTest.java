@@ -0,0 +1,49 @@
+package net.ninjacat.smooth.iterators;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CodecsTest {
+
+    @Test
+    public void stringsShouldBeWrittenAndReadBack() throws Exception {
+        assertThat(roundTrip(Codecs.strings(), "", "text", "\u0442\u0435\u043a\u0441\u0442"),
+                is(Arrays.asList("", "text", "\u0442\u0435\u043a\u0441\u0442")));
+    }
+
+    @Test
+    public void numbersShouldBeWrittenAndReadBack() throws Exception {
+        assertThat(roundTrip(Codecs.integers(), Integer.MIN_VALUE, 0, 42), is(Arrays.asList(Integer.MIN_VALUE, 0, 42)));
+        assertThat(roundTrip(Codecs.longs(), Long.MAX_VALUE, -1L), is(Arrays.asList(Long.MAX_VALUE, -1L)));
+    }
+
+    @Test
+    public void serializableShouldWriteAnySerializableObject() throws Exception {
+        final List<Integer> list = Arrays.asList(1, 2);
+        final Codec<Object> codec = Codecs.serializable();
+
+        assertThat(roundTrip(codec, list, "text"), is(Arrays.<Object>asList(list, "text")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> roundTrip(final Codec<T> codec, final T... values) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        for (final T value : values) {
+            codec.write(value, out);
+        }
+        out.close();
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        final Object[] result = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = codec.read(in);
+        }
+        return (List<T>) Arrays.asList(result);
+    }
+}
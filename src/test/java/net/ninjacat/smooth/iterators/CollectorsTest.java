@@ -4,9 +4,11 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 
 public class CollectorsTest {
@@ -50,4 +52,63 @@ public class CollectorsTest {
         assertThat("collected data should contain elements from iterable", collection, hasItems(1, 2, 3));
         assertThat("collection type should be ArrayList", collection, instanceOf(TreeSet.class));
     }
+
+    @Test
+    public void shouldSupplyNewCollectionForEachCollect() throws Exception {
+        final Collector<Integer> collector = Collectors.arrayList();
+
+        final Collection<Integer> first = Iter.of(1, 2).collectWith(collector);
+        final Collection<Integer> second = Iter.of(3).collectWith(collector);
+
+        assertThat(first, is((Collection<Integer>) Arrays.asList(1, 2)));
+        assertThat(second, is((Collection<Integer>) Arrays.asList(3)));
+    }
+
+    @Test
+    public void shouldPassSizeHintToCollector() throws Exception {
+        final List<Integer> hints = new ArrayList<Integer>();
+        final Collector<Integer> collector = new Collector<Integer>() {
+            @Override
+            public Collection<Integer> supply(final int sizeHint) {
+                hints.add(sizeHint);
+                return new ArrayList<Integer>();
+            }
+        };
+
+        this.iter.collectWith(collector);
+        Iter.of(Arrays.asList(1, 2, 3, 4).iterator()).collectWith(collector);
+
+        assertThat(hints, is(Arrays.asList(3, Collector.UNKNOWN_SIZE)));
+    }
+
+    @Test
+    public void shouldCollectPlainIterable() throws Exception {
+        final Collection<Integer> collection = Collectors.<Integer>hashSet().collect(Arrays.asList(1, 2, 2, 3));
+
+        assertThat(collection, is((Collection<Integer>) new HashSet<Integer>(Arrays.asList(1, 2, 3))));
+    }
+
+    @Test
+    public void shouldCollectPartsInParallel() throws Exception {
+        final AtomicInteger supplied = new AtomicInteger();
+        final AtomicInteger combined = new AtomicInteger();
+        final Collector<Integer> collector = new Collector<Integer>() {
+            @Override
+            public Collection<Integer> supply(final int sizeHint) {
+                supplied.incrementAndGet();
+                return new ArrayList<Integer>(sizeHint);
+            }
+
+            @Override
+            public Collection<Integer> combine(final Collection<Integer> left, final Collection<Integer> right) {
+                combined.incrementAndGet();
+                return super.combine(left, right);
+            }
+        };
+
+        final Collection<Integer> collection = Iters.range(100000).parallel().collectWith(collector);
+
+        assertThat(collection, is((Collection<Integer>) Iters.range(100000).toList()));
+        assertThat(combined.get(), is(supplied.get() - 1));
+    }
 }
@@ -0,0 +1,48 @@
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.DoubleFunc;
+import net.ninjacat.smooth.functions.DoublePredicate;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DoubleIterTest {
+
+    @Test
+    public void mapAndFilterShouldBeAppliedInOrder() throws Exception {
+        final double[] result = DoubleIter.of(0.5, 1.5, 2.5).map(new DoubleFunc() {
+            @Override
+            public double apply(final double value) {
+                return value * 2;
+            }
+        }).filter(new DoublePredicate() {
+            @Override
+            public boolean matches(final double value) {
+                return value > 1;
+            }
+        }).toArray();
+
+        assertThat(Arrays.equals(result, new double[]{3.0, 5.0}), is(true));
+    }
+
+    @Test
+    public void shouldAggregateValues() throws Exception {
+        final DoubleIter iter = DoubleIter.of(1.5, -0.5, 4.0);
+
+        assertThat(iter.sum(), is(5.0));
+        assertThat(DoubleIter.of(1.5, -0.5, 4.0).min(), is(-0.5));
+        assertThat(DoubleIter.of(1.5, -0.5, 4.0).max(), is(4.0));
+        assertThat(DoubleIter.of().count(), is(0L));
+    }
+
+    @Test
+    public void shouldFindExtremesLikeMath() throws Exception {
+        assertThat(Double.isNaN(DoubleIter.of(1.5, Double.NaN, 4.0).min()), is(true));
+        assertThat(Double.isNaN(DoubleIter.of(Double.NaN, 1.5, 4.0).max()), is(true));
+        assertThat(1 / DoubleIter.of(0.0, -0.0).min(), is(Double.NEGATIVE_INFINITY));
+        assertThat(1 / DoubleIter.of(-0.0, 0.0).max(), is(Double.POSITIVE_INFINITY));
+    }
+}
@@ -0,0 +1,84 @@
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.IntFunc;
+import net.ninjacat.smooth.functions.IntPredicate;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static net.ninjacat.smooth.iterators.IterFixtures.verifyNext;
+import static net.ninjacat.smooth.iterators.IterFixtures.verifyNoNext;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IntIterTest {
+
+    private static final IntPredicate ODD = new IntPredicate() {
+        @Override
+        public boolean matches(final int value) {
+            return 0 != value % 2;
+        }
+    };
+
+    private static final IntFunc SQUARE = new IntFunc() {
+        @Override
+        public int apply(final int value) {
+            return value * value;
+        }
+    };
+
+    @Test
+    public void mapAndFilterShouldBeAppliedInOrder() throws Exception {
+        final int[] result = IntIter.of(1, 2, 3, 4, 5).filter(ODD).map(SQUARE).toArray();
+
+        assertThat(result, is(new int[]{1, 9, 25}));
+    }
+
+    @Test
+    public void sumShouldNotOverflow() throws Exception {
+        final long sum = IntIter.of(Integer.MAX_VALUE, Integer.MAX_VALUE).sum();
+
+        assertThat(sum, is(2L * Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void rangeShouldGenerateValuesInRange() throws Exception {
+        assertThat(IntIter.range(3, 7).toArray(), is(new int[]{3, 4, 5, 6}));
+        assertThat(IntIter.range(7, 3).count(), is(0L));
+    }
+
+    @Test
+    public void minAndMaxShouldFindExtremes() throws Exception {
+        assertThat(IntIter.of(4, -2, 9, 0).min(), is(-2));
+        assertThat(IntIter.of(4, -2, 9, 0).max(), is(9));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void minShouldFailOnEmptyIterator() throws Exception {
+        IntIter.range(0, 10).filter(new IntPredicate() {
+            @Override
+            public boolean matches(final int value) {
+                return value > 10;
+            }
+        }).min();
+    }
+
+    @Test
+    public void boxedShouldReturnFilteredValues() throws Exception {
+        final Iterator<Integer> iterator = IntIter.range(0, 5).filter(ODD).boxed().iterator();
+
+        verifyNext(iterator, 1);
+        verifyNext(iterator, 3);
+        verifyNoNext(iterator);
+    }
+
+    @Test
+    public void boxedShouldContinueAfterPartialRead() throws Exception {
+        final Iter<Integer> boxed = IntIter.range(0, 5).map(SQUARE).boxed();
+        verifyNext(boxed.iterator(), 0);
+
+        assertThat(boxed.toList(), is(Arrays.asList(1, 4, 9, 16)));
+    }
+}
@@ -0,0 +1,85 @@
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.utils.Pair;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IntRangeTest {
+
+    @Test
+    public void shouldCountValuesWithoutIterating() throws Exception {
+        assertThat(IntRange.of(0, 10).count(), is(10L));
+        assertThat(IntRange.of(0, 10, 3).count(), is(4L));
+        assertThat(IntRange.of(10, 0, -4).count(), is(3L));
+        assertThat(IntRange.of(5, 5).count(), is(0L));
+        assertThat(IntRange.of(Integer.MIN_VALUE, Integer.MAX_VALUE).count(), is(0xFFFFFFFFL));
+    }
+
+    @Test
+    public void shouldGenerateSteppedValues() throws Exception {
+        assertThat(IntRange.of(0, 10, 3).iter().toList(), is(Arrays.asList(0, 3, 6, 9)));
+        assertThat(IntRange.of(10, 0, -4).iter().toList(), is(Arrays.asList(10, 6, 2)));
+    }
+
+    @Test
+    public void shouldNotOverflowAtTheEndOfIntegerRange() throws Exception {
+        assertThat(IntRange.of(Integer.MAX_VALUE - 2, Integer.MAX_VALUE).iter().toList(),
+                is(Arrays.asList(Integer.MAX_VALUE - 2, Integer.MAX_VALUE - 1)));
+    }
+
+    @Test
+    public void shouldCheckIfValueIsInRange() throws Exception {
+        final IntRange range = IntRange.of(1, 20, 4);
+
+        assertThat(range.contains(13), is(true));
+        assertThat(range.contains(14), is(false));
+        assertThat(range.contains(21), is(false));
+        assertThat(range.contains(-3), is(false));
+        assertThat(IntRange.of(10, 0, -5).contains(5), is(true));
+    }
+
+    @Test
+    public void skipShouldMoveStartOfRange() throws Exception {
+        final IntRange range = IntRange.of(0, 1000000, 2).skip(499998);
+
+        assertThat(range.iter().toList(), is(Arrays.asList(999996, 999998)));
+        assertThat(range.skip(10).isEmpty(), is(true));
+    }
+
+    @Test
+    public void limitShouldKeepFirstValues() throws Exception {
+        assertThat(IntRange.of(0, 100).limit(3).iter().toList(), is(Arrays.asList(0, 1, 2)));
+    }
+
+    @Test
+    public void splitShouldReturnTwoHalves() throws Exception {
+        final Pair<IntRange, IntRange> halves = IntRange.of(0, 5).split();
+
+        assertThat(halves.getLeft(), is(IntRange.of(0, 2)));
+        assertThat(halves.getRight(), is(IntRange.of(2, 5)));
+    }
+
+    @Test
+    public void getShouldReturnValueAtIndex() throws Exception {
+        assertThat(IntRange.of(3, 30, 3).get(4), is(15));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getShouldFailOutsideOfRange() throws Exception {
+        IntRange.of(3, 30, 3).get(9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotAllowZeroStep() throws Exception {
+        IntRange.of(0, 10, 0);
+    }
+
+    @Test
+    public void intsShouldUseSameValues() throws Exception {
+        assertThat(IntRange.of(0, 10, 3).ints().toArray(), is(new int[]{0, 3, 6, 9}));
+    }
+}
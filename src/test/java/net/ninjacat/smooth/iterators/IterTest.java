@@ -18,14 +18,27 @@ package net.ninjacat.smooth.iterators;
 
 import net.ninjacat.smooth.collections.Collect;
 import net.ninjacat.smooth.functions.*;
+import net.ninjacat.smooth.utils.Pair;
 import org.hamcrest.CoreMatchers;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FilenameFilter;
+import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static net.ninjacat.smooth.iterators.IterFixtures.SideEffect;
+import static net.ninjacat.smooth.iterators.IterFixtures.verifyNext;
+import static net.ninjacat.smooth.iterators.IterFixtures.verifyNoNext;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 import static org.junit.matchers.JUnitMatchers.hasItems;
 
 public class IterTest {
@@ -125,6 +138,33 @@ public class IterTest {
         assertThat(result, is(10));
     }
 
+    @Test
+    public void reduceShouldFoldWithTwoFunctionsInSinglePass() throws Exception {
+        final List<Integer> read = new ArrayList<Integer>();
+
+        final Pair<Integer, PriorityQueue<Integer>> result = Iter.of(new CountingList(100, read)).reduce(
+                0, new Function2<Integer, Integer, Integer>() {
+                    @Override
+                    public Integer apply(final Integer count, final Integer value) {
+                        return count + 1;
+                    }
+                },
+                new PriorityQueue<Integer>(), new Function2<PriorityQueue<Integer>, PriorityQueue<Integer>, Integer>() {
+                    @Override
+                    public PriorityQueue<Integer> apply(final PriorityQueue<Integer> top, final Integer value) {
+                        top.add(value);
+                        if (top.size() > 3) {
+                            top.poll();
+                        }
+                        return top;
+                    }
+                });
+
+        assertThat(result.getLeft(), is(100));
+        assertThat(Iter.of(result.getRight()).sorted(NATURAL).toList(), is(Arrays.asList(97, 98, 99)));
+        assertThat(read, is(Iters.range(100).toList()));
+    }
+
     @Test
     public void lazyReduceShouldFoldLeft() throws Exception {
         final Iter<Integer> iter = Iter.of(Arrays.asList(1, 2, 3, 4));
@@ -344,4 +384,1071 @@ public class IterTest {
         assertThat("Generated map should contain pair 2->'2'", map.get(2), is("2"));
         assertThat("Generated map should contain two elements", map.size(), is(2));
     }
+
+    @Test
+    public void chainedStagesShouldBeAppliedInOrder() throws Exception {
+        final Iter<Integer> iter = Iter.of(1, 2, 3, 4, 5, 6);
+
+        final List<String> result = iter.filter(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return 0 == integer % 2;
+            }
+        }).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                return integer * 10;
+            }
+        }).filter(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer > 20;
+            }
+        }).map(new Func<String, Integer>() {
+            @Override
+            public String apply(final Integer integer) {
+                return String.valueOf(integer);
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList("40", "60")));
+    }
+
+    @Test
+    public void stageShouldContinueFromPartiallyConsumedIterator() throws Exception {
+        final Iter<Integer> iter = Iter.of(1, 2, 3, 4).filter(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer > 1;
+            }
+        });
+        IterFixtures.verifyNext(iter.iterator(), 2);
+
+        final List<Integer> result = iter.map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                return integer * 2;
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList(6, 8)));
+    }
+
+    @Test
+    public void filterShouldPassNullElements() throws Exception {
+        final Iterator<String> iterator = Iter.of("a", null, "b").filter(new Predicate<String>() {
+            @Override
+            public boolean matches(final String s) {
+                return !"a".equals(s);
+            }
+        }).iterator();
+
+        IterFixtures.verifyNext(iterator, null);
+        IterFixtures.verifyNext(iterator, "b");
+        IterFixtures.verifyNoNext(iterator);
+    }
+
+    @Test
+    public void findShouldStopPushingElementsWhenMatchIsFound() throws Exception {
+        final List<Integer> seen = new ArrayList<Integer>();
+
+        final Integer result = Iter.of(Arrays.asList(1, 2, 3, 4)).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                seen.add(integer);
+                return integer;
+            }
+        }).find(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer.equals(2);
+            }
+        }, -1);
+
+        assertThat(result, is(2));
+        assertThat(seen, is(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void terminalOperationShouldContinueAfterEarlyStop() throws Exception {
+        final Iter<Integer> iter = Iter.of(1, 2, 3, 4);
+
+        final boolean found = iter.any(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer.equals(2);
+            }
+        });
+
+        assertThat(found, is(true));
+        assertThat(iter.toList(), is(Arrays.asList(3, 4)));
+    }
+
+    @Test
+    public void toArrayShouldUseSuppliedArrayIfElementsFit() throws Exception {
+        final Integer[] target = {9, 9, 9, 9};
+
+        final Integer[] result = Iter.of(1, 2, 3).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                return integer * 2;
+            }
+        }).toArray(target);
+
+        assertThat(result == target, is(true));
+        assertThat(result, is(new Integer[]{2, 4, 6, null}));
+    }
+
+    @Test
+    public void toArrayShouldAllocateNewArrayForFilteredElements() throws Exception {
+        final Integer[] result = Iters.range(10).filter(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer > 6;
+            }
+        }).toArray(new Integer[1]);
+
+        assertThat(result, is(new Integer[]{7, 8, 9}));
+    }
+
+    @Test
+    public void shouldCollectElementsOfSizedCollection() throws Exception {
+        final Iter<String> iter = Iter.of(new LinkedList<String>(Arrays.asList("a", "b", "c")));
+
+        assertThat(iter.map(new Func<String, String>() {
+            @Override
+            public String apply(final String s) {
+                return s.toUpperCase();
+            }
+        }).toArray(String.class), is(new String[]{"A", "B", "C"}));
+    }
+
+    @Test
+    public void toListShouldHandleMoreElementsThanSourceReported() throws Exception {
+        final List<Integer> source = new ArrayList<Integer>(Arrays.asList(1, 2));
+        final Iter<Integer> iter = Iter.of(new AbstractCollection<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return source.iterator();
+            }
+
+            @Override
+            public int size() {
+                return 1;
+            }
+        });
+
+        assertThat(iter.toList(), is(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void batchShouldGroupElements() throws Exception {
+        final List<List<Integer>> batches = Iters.range(1, 6).batch(2).toList();
+
+        assertThat(batches.size(), is(3));
+        assertThat(batches.get(0), is(Arrays.asList(1, 2)));
+        assertThat(batches.get(1), is(Arrays.asList(3, 4)));
+        assertThat(batches.get(2), is(Arrays.asList(5)));
+    }
+
+    @Test
+    public void batchShouldFlushLastGroupWhenPulled() throws Exception {
+        final Iterator<List<Integer>> iterator = Iter.of(1, 2, 3).filter(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer > 1;
+            }
+        }).batch(5).iterator();
+
+        IterFixtures.verifyNext(iterator, Arrays.asList(2, 3));
+        IterFixtures.verifyNoNext(iterator);
+    }
+
+    @Test
+    public void batchShouldReuseBufferWhenRequested() throws Exception {
+        final List<List<Integer>> seen = new ArrayList<List<Integer>>();
+        final List<List<Integer>> contents = new ArrayList<List<Integer>>();
+
+        Iters.range(5).batch(2, true).forEach(new Procedure<List<Integer>>() {
+            @Override
+            public void call(final List<Integer> batch) {
+                seen.add(batch);
+                contents.add(new ArrayList<Integer>(batch));
+            }
+        });
+
+        assertThat(contents, is(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(2, 3), Arrays.asList(4))));
+        assertThat(seen.get(0) == seen.get(2), is(true));
+    }
+
+    @Test
+    public void reusedBatchShouldKeepContentsUntilNextElementIsRequested() throws Exception {
+        final Iterator<List<Integer>> iterator = Iters.range(4).batch(2, true).iterator();
+
+        IterFixtures.verifyNext(iterator, Arrays.asList(0, 1));
+        IterFixtures.verifyNext(iterator, Arrays.asList(2, 3));
+        IterFixtures.verifyNoNext(iterator);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchShouldRejectNonPositiveSize() throws Exception {
+        Iter.of(1, 2).batch(0);
+    }
+
+    @Test
+    public void limitShouldNotPullElementsBeyondLimit() throws Exception {
+        final List<Integer> pulled = new ArrayList<Integer>();
+        final Iter<Integer> iter = Iters.range(100).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                pulled.add(integer);
+                return integer;
+            }
+        }).limit(3);
+
+        assertThat(iter.toList(), is(Arrays.asList(0, 1, 2)));
+        assertThat(pulled, is(Arrays.asList(0, 1, 2)));
+    }
+
+    @Test
+    public void limitShouldNotPullElementsBeyondLimitThroughIterator() throws Exception {
+        final Iterator<Integer> source = Arrays.asList(1, 2, 3).iterator();
+        final Iterator<Integer> iterator = Iter.of(source).filter(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return true;
+            }
+        }).limit(2).iterator();
+
+        verifyNext(iterator, 1);
+        verifyNext(iterator, 2);
+        verifyNoNext(iterator);
+        verifyNext(source, 3);
+    }
+
+    @Test
+    public void limitShouldNotAffectResultOfAll() throws Exception {
+        final boolean result = Iter.of(1, 2, 3, -1).limit(3).all(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer > 0;
+            }
+        });
+
+        assertThat(result, is(true));
+    }
+
+    @Test
+    public void skipShouldJumpOverListElementsWithoutReadingThem() throws Exception {
+        final List<Integer> read = new ArrayList<Integer>();
+        final List<Integer> list = new CountingList(1000, read);
+
+        assertThat(Iter.of(list).skip(995).toList(), is(Arrays.asList(995, 996, 997, 998, 999)));
+        assertThat(read, is(Arrays.asList(995, 996, 997, 998, 999)));
+    }
+
+    @Test
+    public void skipShouldBeLazy() throws Exception {
+        final Iterator<Integer> source = Arrays.asList(1, 2, 3).iterator();
+        final Iter<Integer> iter = Iter.of(source).skip(2);
+
+        verifyNext(source, 1);
+        assertThat(iter.toList(), is(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void skipShouldWorkAfterOtherStages() throws Exception {
+        final List<Integer> result = Iters.range(10).filter(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer % 2 == 0;
+            }
+        }).skip(2).limit(2).toList();
+
+        assertThat(result, is(Arrays.asList(4, 6)));
+    }
+
+    @Test
+    public void skipAndLimitShouldSelectPageOfRange() throws Exception {
+        assertThat(Iters.range(1000000).skip(500000).limit(3).toList(), is(Arrays.asList(500000, 500001, 500002)));
+        assertThat(Iter.of(1, 2, 3).skip(5).toList(), is(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void takeWhileShouldStopAtFirstMismatch() throws Exception {
+        final List<Integer> result = Iter.of(1, 2, 5, 1).takeWhile(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer < 3;
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void dropWhileShouldReturnElementsStartingWithFirstMismatch() throws Exception {
+        final List<Integer> result = Iter.of(1, 2, 5, 1).dropWhile(new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer < 3;
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList(5, 1)));
+    }
+
+    @Test
+    public void parallelShouldApplyLimitToWholeSequence() throws Exception {
+        final List<Integer> result = Iters.range(10000).skip(10).limit(5).parallel().map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                return integer * 2;
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList(20, 22, 24, 26, 28)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void limitShouldRejectNegativeValue() throws Exception {
+        Iter.of(1, 2).limit(-1);
+    }
+
+    @Test
+    public void flatMapShouldStreamInnerElements() throws Exception {
+        final List<Integer> result = Iter.of(1, 2, 3).flatMap(new Func<List<Integer>, Integer>() {
+            @Override
+            public List<Integer> apply(final Integer integer) {
+                return Collections.nCopies(integer, integer);
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList(1, 2, 2, 3, 3, 3)));
+    }
+
+    @Test
+    public void flatMapShouldReadArraysAndIterables() throws Exception {
+        final List<String> result = Iter.of("a,b", "", "c").flatMap(new Func<Iterable<String>, String>() {
+            @Override
+            public Iterable<String> apply(final String s) {
+                return s.isEmpty() ? new HashSet<String>() : ArrayIterable.fromArray(s.split(","));
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList("a", "b", "c")));
+    }
+
+    @Test
+    public void flatMapShouldRunInnerPipelines() throws Exception {
+        final List<Integer> result = Iter.of(3, 4).flatMap(new Func<Iter<Integer>, Integer>() {
+            @Override
+            public Iter<Integer> apply(final Integer integer) {
+                return Iters.range(integer).limit(2).map(new Func<Integer, Integer>() {
+                    @Override
+                    public Integer apply(final Integer value) {
+                        return value * 10;
+                    }
+                });
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList(0, 10, 0, 10)));
+    }
+
+    @Test
+    public void flatMapShouldStopWhenDownstreamStops() throws Exception {
+        final List<Integer> expanded = new ArrayList<Integer>();
+        final Iterator<Integer> iterator = Iter.of(1, 2, 3).flatMap(new Func<List<Integer>, Integer>() {
+            @Override
+            public List<Integer> apply(final Integer integer) {
+                expanded.add(integer);
+                return Arrays.asList(integer, integer);
+            }
+        }).limit(3).iterator();
+
+        verifyNext(iterator, 1);
+        verifyNext(iterator, 1);
+        verifyNext(iterator, 2);
+        verifyNoNext(iterator);
+        assertThat(expanded, is(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void slidingShouldReturnOverlappingWindows() throws Exception {
+        final List<Integer> sums = Iters.range(1, 6).sliding(3, 1).map(SUM).toList();
+
+        assertThat(sums, is(Arrays.asList(6, 9, 12)));
+    }
+
+    @Test
+    public void slidingShouldSkipElementsBetweenWindows() throws Exception {
+        final List<List<Integer>> windows = Iters.range(8).sliding(2, 3).map(COPY).toList();
+
+        assertThat(windows, is(Arrays.asList(Arrays.asList(0, 1), Arrays.asList(3, 4), Arrays.asList(6, 7))));
+    }
+
+    @Test
+    public void windowedShouldReturnOnlyFullWindows() throws Exception {
+        final Iterator<List<Integer>> iterator = Iter.of(1, 2, 3, 4, 5).windowed(2).iterator();
+
+        verifyNext(iterator, Arrays.asList(1, 2));
+        verifyNext(iterator, Arrays.asList(3, 4));
+        verifyNoNext(iterator);
+    }
+
+    @Test
+    public void slidingShouldReuseSingleWindow() throws Exception {
+        final Set<List<Integer>> windows = Collections.newSetFromMap(new IdentityHashMap<List<Integer>, Boolean>());
+        Iters.range(100).sliding(10, 1).forEach(new Procedure<List<Integer>>() {
+            @Override
+            public void call(final List<Integer> window) {
+                windows.add(window);
+            }
+        });
+
+        assertThat(windows.size(), is(1));
+    }
+
+    @Test
+    public void slidingShouldReturnNothingForShortSequence() throws Exception {
+        assertThat(Iter.of(1, 2).sliding(3, 1).map(SUM).toList(), is(Collections.<Integer>emptyList()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slidingShouldRejectNonPositiveStep() throws Exception {
+        Iter.of(1, 2).sliding(2, 0);
+    }
+
+    @Test
+    public void sortedShouldSortInMemory() throws Exception {
+        final List<Integer> result = Iter.of(3, 1, 2).sorted(Collections.<Integer>reverseOrder()).toList();
+
+        assertThat(result, is(Arrays.asList(3, 2, 1)));
+    }
+
+    @Test
+    public void sortedShouldSpillRunsWhenBudgetIsExceeded() throws Exception {
+        final List<Integer> data = new ArrayList<Integer>(Iters.range(1000).toList());
+        Collections.shuffle(data, new Random(42));
+        final int filesBefore = tempFiles("smooth-sort-");
+
+        final List<Integer> result = Iter.of(data).sorted(NATURAL, 64, Codecs.integers()).toList();
+
+        assertThat(result, is(Iters.range(1000).toList()));
+        assertThat(tempFiles("smooth-sort-"), is(filesBefore));
+    }
+
+    @Test
+    public void sortedShouldDeleteRunsWhenStoppedEarly() throws Exception {
+        final List<Integer> data = new ArrayList<Integer>(Iters.range(1000).toList());
+        Collections.shuffle(data, new Random(42));
+        final int filesBefore = tempFiles("smooth-sort-");
+
+        final List<Integer> result = Iter.of(data).sorted(NATURAL, 64, Codecs.integers()).limit(5).toList();
+
+        assertThat(result, is(Iters.range(5).toList()));
+        assertThat(tempFiles("smooth-sort-"), is(filesBefore));
+    }
+
+    @Test
+    public void sortedShouldDeleteRunsWhenUpstreamFails() throws Exception {
+        final int filesBefore = tempFiles("smooth-sort-");
+        final Iter<Integer> failing = Iters.range(1000).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer value) {
+                if (500 == value) {
+                    throw new IllegalStateException("boom");
+                }
+                return -value;
+            }
+        });
+
+        try {
+            failing.sorted(NATURAL, 64, Codecs.integers()).toList();
+            fail("Should rethrow failure");
+        } catch (final IllegalStateException ignored) {
+            // expected
+        }
+
+        assertThat(tempFiles("smooth-sort-"), is(filesBefore));
+    }
+
+    @Test
+    public void sortedShouldDeleteRunsWhenComparatorFailsDuringMerge() throws Exception {
+        final int filesBefore = tempFiles("smooth-sort-");
+        final List<Integer> data = new ArrayList<Integer>(Iters.range(ExternalSort.MAX_MERGE_WIDTH * 4).toList());
+        Collections.shuffle(data, new Random(11));
+
+        try {
+            Iter.of(data).sorted(new Comparator<Integer>() {
+                private int calls;
+
+                @Override
+                public int compare(final Integer left, final Integer right) {
+                    // runs of two elements take one comparison each, later calls happen while merging
+                    if (++this.calls > 3 * data.size() / 2) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return left.compareTo(right);
+                }
+            }, 2, Codecs.integers()).toList();
+            fail("Should rethrow failure");
+        } catch (final IllegalStateException ignored) {
+            // expected
+        }
+
+        assertThat(tempFiles("smooth-sort-"), is(filesBefore));
+    }
+
+    @Test
+    public void sortedShouldMergeManyRunsInSeveralPasses() throws Exception {
+        final int size = ExternalSort.MAX_MERGE_WIDTH * 6;
+        final List<Integer> data = new ArrayList<Integer>(Iters.range(size).toList());
+        Collections.shuffle(data, new Random(7));
+
+        final Iterator<Integer> iterator = Iter.of(data).sorted(NATURAL, 2, Codecs.integers()).iterator();
+
+        for (int i = 0; i < size; i++) {
+            verifyNext(iterator, i);
+        }
+        verifyNoNext(iterator);
+    }
+
+    @Test
+    public void sortedShouldBeStableWhenSpilling() throws Exception {
+        final List<String> result = Iter.of("bb", "a", "cc", "b", "aa", "c").sorted(new Comparator<String>() {
+            @Override
+            public int compare(final String left, final String right) {
+                return left.length() - right.length();
+            }
+        }, 2).toList();
+
+        assertThat(result, is(Arrays.asList("a", "b", "c", "bb", "cc", "aa")));
+    }
+
+    @Test
+    public void sortedShouldBeLazy() throws Exception {
+        final SideEffect sideEffect = new SideEffect();
+        final Iter<Integer> sorted = Iter.of(2, 1).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                sideEffect.sideEffect();
+                return integer;
+            }
+        }).sorted(NATURAL);
+
+        assertThat(sideEffect.hasSideEffects(), is(false));
+        assertThat(sorted.toList(), is(Arrays.asList(1, 2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sortedShouldRejectNonPositiveBudget() throws Exception {
+        Iter.of(1, 2).sorted(NATURAL, 0);
+    }
+
+    @Test
+    public void aggregateShouldFoldElementsOfEachGroup() throws Exception {
+        final Map<Integer, Integer> result = pairsToMap(Iter.of("a", "bb", "c", "dd", "eee", null).aggregate(LENGTH, 0, COUNT));
+
+        final Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        expected.put(1, 2);
+        expected.put(2, 2);
+        expected.put(3, 1);
+        expected.put(null, 1);
+        assertThat(result, is(expected));
+    }
+
+    @Test
+    public void aggregateShouldSpillPartitionsWhenBudgetIsExceeded() throws Exception {
+        final int filesBefore = tempFiles("smooth-aggregate-");
+
+        final Map<Integer, Integer> result = pairsToMap(Iters.range(10000).aggregate(MOD_100, 0, SUM_VALUES,
+                SUM_VALUES, 8, Codecs.integers(), Codecs.integers()));
+
+        assertThat(result.size(), is(100));
+        for (int key = 0; key < 100; key++) {
+            assertThat(result.get(key), is(100 * key + 100 * 99 * 50));
+        }
+        assertThat(tempFiles("smooth-aggregate-"), is(filesBefore));
+    }
+
+    @Test
+    public void aggregateShouldDeletePartitionsWhenKeyFunctionFails() throws Exception {
+        final int filesBefore = tempFiles("smooth-aggregate-");
+
+        try {
+            Iters.range(10000).aggregate(new Func<Integer, Integer>() {
+                @Override
+                public Integer apply(final Integer value) {
+                    if (5000 == value) {
+                        throw new IllegalStateException("boom");
+                    }
+                    return value % 100;
+                }
+            }, 0, SUM_VALUES, SUM_VALUES, 8, Codecs.integers(), Codecs.integers()).toList();
+            fail("Should rethrow failure");
+        } catch (final IllegalStateException ignored) {
+            // expected
+        }
+
+        assertThat(tempFiles("smooth-aggregate-"), is(filesBefore));
+    }
+
+    @Test
+    public void aggregateShouldDeletePartitionsWhenStoppedEarly() throws Exception {
+        final int filesBefore = tempFiles("smooth-aggregate-");
+
+        final List<Pair<Integer, Integer>> result = Iters.range(10000).aggregate(MOD_100, 0, SUM_VALUES,
+                SUM_VALUES, 8, Codecs.integers(), Codecs.integers()).limit(3).toList();
+
+        assertThat(result.size(), is(3));
+        assertThat(tempFiles("smooth-aggregate-"), is(filesBefore));
+    }
+
+    @Test
+    public void aggregateShouldSplitPartitionsWhichDoNotFit() throws Exception {
+        final Map<Integer, Integer> result = pairsToMap(Iters.range(3000).aggregate(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                return integer % 1000;
+            }
+        }, 0, SUM_VALUES, SUM_VALUES, 2, Codecs.integers(), Codecs.integers()));
+
+        assertThat(result.size(), is(1000));
+        assertThat(result.get(7), is(7 + 1007 + 2007));
+    }
+
+    @Test
+    public void aggregateShouldBeLazy() throws Exception {
+        final SideEffect sideEffect = new SideEffect();
+        final Iter<Pair<Integer, Integer>> aggregated = Iter.of("a").map(new Func<String, String>() {
+            @Override
+            public String apply(final String value) {
+                sideEffect.sideEffect();
+                return value;
+            }
+        }).aggregate(LENGTH, 0, COUNT);
+
+        assertThat(sideEffect.hasSideEffects(), is(false));
+        assertThat(aggregated.toList().size(), is(1));
+    }
+
+    @Test
+    public void topKShouldReturnGreatestElementsInDescendingOrder() throws Exception {
+        final List<Integer> data = new ArrayList<Integer>(Iters.range(1000).toList());
+        Collections.shuffle(data, new Random(1));
+
+        assertThat(Iter.of(data).topK(5, NATURAL), is(Arrays.asList(999, 998, 997, 996, 995)));
+    }
+
+    @Test
+    public void topKShouldReturnAllElementsIfThereAreFewerThanK() throws Exception {
+        assertThat(Iter.of(2, 3, 1).topK(10, NATURAL), is(Arrays.asList(3, 2, 1)));
+        assertThat(Iter.of(2, 3, 1).topK(0, NATURAL), is(Collections.<Integer>emptyList()));
+    }
+
+    @Test
+    public void topKByScoreShouldReturnElementsWithHighestScores() throws Exception {
+        final List<String> data = Arrays.asList("bb", "a", "dddd", "ccc", "eeeee", "", "ff");
+
+        final List<String> result = Iter.of(data).topK(3, new ToDoubleFunc<String>() {
+            @Override
+            public double apply(final String value) {
+                return value.length();
+            }
+        });
+
+        assertThat(result, is(Arrays.asList("eeeee", "dddd", "ccc")));
+    }
+
+    @Test
+    public void topKByScoreShouldMatchSortingForRandomData() throws Exception {
+        final Random random = new Random(3);
+        final List<Double> data = new ArrayList<Double>();
+        for (int i = 0; i < 5000; i++) {
+            data.add(random.nextDouble());
+        }
+        final List<Double> sorted = new ArrayList<Double>(data);
+        Collections.sort(sorted, Collections.reverseOrder());
+
+        final List<Double> result = Iter.of(data).topK(50, new ToDoubleFunc<Double>() {
+            @Override
+            public double apply(final Double value) {
+                return value;
+            }
+        });
+
+        assertThat(result, is(sorted.subList(0, 50)));
+    }
+
+    @Test
+    public void minAndMaxShouldFindExtremes() throws Exception {
+        assertThat(Iter.of(3, 1, 4, 1, 5).min(NATURAL), is(1));
+        assertThat(Iter.of(3, 1, 4, 1, 5).max(NATURAL), is(5));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void maxShouldFailOnEmptyIterator() throws Exception {
+        Iter.of(Collections.<Integer>emptyList()).max(NATURAL);
+    }
+
+    @Test
+    public void zipWithShouldCombineElementsAtSamePosition() throws Exception {
+        final List<String> result = Iter.of("a", "b", "c").zipWith(Arrays.asList(1, 2, 3, 4), new Func2<String, String, Integer>() {
+            @Override
+            public String apply(final String letter, final Integer number) {
+                return letter + number;
+            }
+        }).toList();
+
+        assertThat(result, is(Arrays.asList("a1", "b2", "c3")));
+    }
+
+    @Test
+    public void zipWithShouldStopWithoutPullingExtraElements() throws Exception {
+        final Iterator<Integer> source = Arrays.asList(1, 2, 3).iterator();
+
+        final List<Integer> result = Iter.of(source).zipWith(IntRange.of(10, 12), ADD).toList();
+
+        assertThat(result, is(Arrays.asList(11, 13)));
+        verifyNext(source, 3);
+    }
+
+    @Test
+    public void zipWithShouldReadOtherIterablesFromBeginningForEachOperation() throws Exception {
+        final Iter<Integer> zipped = Iter.of(1, 2).zipWith(new LinkedHashSet<Integer>(Arrays.asList(10, 20)), ADD);
+        final Iterator<Integer> iterator = zipped.iterator();
+
+        verifyNext(iterator, 11);
+        verifyNext(iterator, 22);
+        verifyNoNext(iterator);
+    }
+
+    @Test
+    public void variadicZipWithShouldCombineAllSources() throws Exception {
+        final List<String> result = Iter.of("x", "y", "z").zipWith(new Func<String, Object[]>() {
+            @Override
+            public String apply(final Object[] values) {
+                return values[0] + ":" + values[1] + ":" + values[2];
+            }
+        }, ArrayIterable.fromArray(new Integer[]{1, 2, 3}), LongRange.of(7, 9)).toList();
+
+        assertThat(result, is(Arrays.asList("x:1:7", "y:2:8")));
+    }
+
+    @Test
+    public void zipWithShouldKnowSizeOfIndexedSources() throws Exception {
+        final Integer[] array = Iter.of(1, 2, 3).zipWith(Arrays.asList(1, 2), ADD).toArray(new Integer[2]);
+
+        assertThat(array, is(new Integer[]{2, 4}));
+    }
+
+    private static final Func2<Integer, Integer, Integer> ADD = new Func2<Integer, Integer, Integer>() {
+        @Override
+        public Integer apply(final Integer left, final Integer right) {
+            return left + right;
+        }
+    };
+
+    @Test
+    public void prefetchShouldReturnAllElementsInOrder() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<Integer> result = Iter.of(1, null, 3).prefetch(executor, 1).toList();
+
+            assertThat(result, is(Arrays.asList(1, null, 3)));
+            assertThat(Iters.range(1000).prefetch(executor, 16).toList(), is(Iters.range(1000).toList()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void prefetchShouldRethrowUpstreamExceptionAfterPrecedingElements() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Iterator<Integer> iterator = Iter.of(1, 2, 0).map(new Func<Integer, Integer>() {
+                @Override
+                public Integer apply(final Integer integer) {
+                    if (0 == integer) {
+                        throw new IllegalArgumentException("zero");
+                    }
+                    return integer;
+                }
+            }).prefetch(executor, 8).iterator();
+
+            verifyNext(iterator, 1);
+            verifyNext(iterator, 2);
+            try {
+                iterator.hasNext();
+                throw new AssertionError("Exception expected");
+            } catch (final IllegalArgumentException e) {
+                assertThat(e.getMessage(), is("zero"));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void prefetchShouldCancelProducerWhenConsumerStops() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Iterator<Integer> endless = new Iterator<Integer>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return this.next++;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        final List<Integer> result = Iter.of(endless).prefetch(executor, 4).limit(3).toList();
+        executor.shutdown();
+
+        assertThat(result, is(Arrays.asList(0, 1, 2)));
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void prefetchShouldRejectNonPositiveBufferSize() throws Exception {
+        Iter.of(1).prefetch(null, 0);
+    }
+
+    private static <K, V> Map<K, V> pairsToMap(final Iter<Pair<K, V>> pairs) {
+        final Map<K, V> map = new HashMap<K, V>();
+        pairs.forEach(new Procedure<Pair<K, V>>() {
+            @Override
+            public void call(final Pair<K, V> pair) {
+                assertThat(map.containsKey(pair.getLeft()), is(false));
+                map.put(pair.getLeft(), pair.getRight());
+            }
+        });
+        return map;
+    }
+
+    private static final Func<Integer, String> LENGTH = new Func<Integer, String>() {
+        @Override
+        public Integer apply(final String value) {
+            return null == value ? null : value.length();
+        }
+    };
+
+    private static final Function2<Integer, Integer, String> COUNT = new Function2<Integer, Integer, String>() {
+        @Override
+        public Integer apply(final Integer count, final String value) {
+            return count + 1;
+        }
+    };
+
+    private static final Func<Integer, Integer> MOD_100 = new Func<Integer, Integer>() {
+        @Override
+        public Integer apply(final Integer integer) {
+            return integer % 100;
+        }
+    };
+
+    private static final Function2<Integer, Integer, Integer> SUM_VALUES = new Function2<Integer, Integer, Integer>() {
+        @Override
+        public Integer apply(final Integer sum, final Integer value) {
+            return sum + value;
+        }
+    };
+
+    private static int tempFiles(final String prefix) {
+        final String[] files = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+            @Override
+            public boolean accept(final File dir, final String name) {
+                return name.startsWith(prefix);
+            }
+        });
+        return null == files ? 0 : files.length;
+    }
+
+    private static final Comparator<Integer> NATURAL = new Comparator<Integer>() {
+        @Override
+        public int compare(final Integer left, final Integer right) {
+            return left.compareTo(right);
+        }
+    };
+
+    private static final Func<Integer, List<Integer>> SUM = new Func<Integer, List<Integer>>() {
+        @Override
+        public Integer apply(final List<Integer> window) {
+            int sum = 0;
+            for (final Integer value : window) {
+                sum += value;
+            }
+            return sum;
+        }
+    };
+
+    @Test
+    public void shouldReadTeeIteratorsConcurrently() throws Exception {
+        final List<Iter<Integer>> iters = Iters.range(10000).tee(2, 16);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<List<Integer>> other = executor.submit(new Callable<List<Integer>>() {
+                @Override
+                public List<Integer> call() throws Exception {
+                    return iters.get(1).toList();
+                }
+            });
+
+            final int count = iters.get(0).reduce(0, new Function2<Integer, Integer, Integer>() {
+                @Override
+                public Integer apply(final Integer count, final Integer value) {
+                    return count + 1;
+                }
+            });
+
+            assertThat(count, is(10000));
+            assertThat(other.get(5, TimeUnit.SECONDS), is(Iters.range(10000).toList()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldReadTeeIteratorsInterleaved() throws Exception {
+        final List<Iter<Integer>> iters = Iter.of(1, 2, 3, 4).tee(2, 1);
+
+        assertThat(iters.get(0).zipWith(iters.get(1), ADD).toList(), is(Arrays.asList(2, 4, 6, 8)));
+    }
+
+    @Test
+    public void shouldReleaseTeeBufferWhenIteratorStopsEarly() throws Exception {
+        final List<Iter<Integer>> iters = Iters.range(100).tee(2, 4);
+
+        assertThat(iters.get(1).limit(2).toList(), is(Arrays.asList(0, 1)));
+        assertThat(iters.get(0).toList(), is(Iters.range(100).toList()));
+    }
+
+    @Test
+    public void shouldRethrowUpstreamFailureToAllTeeIterators() throws Exception {
+        final List<Iter<Integer>> iters = Iter.of(1, 2, 0).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer value) {
+                return 2 / value;
+            }
+        }).tee(2, 8);
+
+        final Iterator<Integer> first = iters.get(0).iterator();
+        final Iterator<Integer> second = iters.get(1).iterator();
+        verifyNext(first, 2);
+        verifyNext(first, 1);
+        try {
+            first.hasNext();
+            fail("Should rethrow failure");
+        } catch (final ArithmeticException ignored) {
+            // expected
+        }
+        verifyNext(second, 2);
+        verifyNext(second, 1);
+        try {
+            second.hasNext();
+            fail("Should rethrow failure");
+        } catch (final ArithmeticException ignored) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldReadTeeIteratorsOneAfterAnotherWhenSourceFitsIntoBuffer() throws Exception {
+        final List<Iter<Integer>> iters = Iters.range(100).tee(2, 100);
+
+        assertThat(iters.get(0).toList(), is(Iters.range(100).toList()));
+        assertThat(iters.get(1).toList(), is(Iters.range(100).toList()));
+    }
+
+    @Test
+    public void shouldBlockFasterTeeIteratorUntilSlowerOneIsRead() throws Exception {
+        final List<Iter<Integer>> iters = Iters.range(100).tee(2, 8);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<List<Integer>> faster = executor.submit(new Callable<List<Integer>>() {
+                @Override
+                public List<Integer> call() throws Exception {
+                    return iters.get(0).toList();
+                }
+            });
+            try {
+                faster.get(100, TimeUnit.MILLISECONDS);
+                fail("Should wait for slower iterator");
+            } catch (final TimeoutException ignored) {
+                // expected
+            }
+
+            assertThat(iters.get(1).toList(), is(Iters.range(100).toList()));
+            assertThat(faster.get(5, TimeUnit.SECONDS), is(Iters.range(100).toList()));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldNotRetainTeeElementsReadByAllIterators() throws Exception {
+        final List<Iter<Object>> iters = Iters.range(100).map(new Func<Object, Integer>() {
+            @Override
+            public Object apply(final Integer value) {
+                return new Object();
+            }
+        }).tee(2, 8);
+        final Iterator<Object> first = iters.get(0).iterator();
+        final Iterator<Object> second = iters.get(1).iterator();
+
+        final WeakReference<Object> element = new WeakReference<Object>(first.next());
+        second.next();
+        first.next();
+        second.next();
+        for (int i = 0; i < 50 && null != element.get(); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertThat(element.get(), is(CoreMatchers.nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotTeeIntoNoIterators() throws Exception {
+        Iter.of(1).tee(0, 1);
+    }
+
+    private static final Func<List<Integer>, List<Integer>> COPY = new Func<List<Integer>, List<Integer>>() {
+        @Override
+        public List<Integer> apply(final List<Integer> window) {
+            return new ArrayList<Integer>(window);
+        }
+    };
+
+    private static final class CountingList extends AbstractList<Integer> implements RandomAccess {
+        private final int size;
+        private final List<Integer> read;
+
+        private CountingList(final int size, final List<Integer> read) {
+            this.size = size;
+            this.read = read;
+        }
+
+        @Override
+        public Integer get(final int index) {
+            this.read.add(index);
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+    }
 }
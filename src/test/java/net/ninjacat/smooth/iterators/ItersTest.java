@@ -1,16 +1,46 @@
 package net.ninjacat.smooth.iterators;
 
 import net.ninjacat.smooth.collections.Collect;
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Function2;
 import org.hamcrest.core.IsCollectionContaining;
 import org.junit.Test;
 import org.junit.matchers.JUnitMatchers;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class ItersTest {
 
+    private static final Func<String, CharSequence> TO_STRING = new Func<String, CharSequence>() {
+        @Override
+        public String apply(final CharSequence value) {
+            return value.toString();
+        }
+    };
+
+    private static final Func<Integer, Record> RECORD_ID = new Func<Integer, Record>() {
+        @Override
+        public Integer apply(final Record value) {
+            return value.getInt(0);
+        }
+    };
+
     @Test
     public void shouldGenerateRangeWithCorrectValues() throws Exception {
         final Iter<Integer> range = Iters.range(10, 12);
@@ -51,4 +81,202 @@ public class ItersTest {
         final Iter<Integer> repeat = Iters.repeat(1, 3);
         assertThat("Should contain three values", Collect.iteratorToList(repeat.iterator()).size(), is(3));
     }
+
+    @Test
+    public void shouldGenerateSteppedRange() throws Exception {
+        final Iter<Integer> range = Iters.range(10, 0, -3);
+
+        assertThat(range.toList(), is(Arrays.asList(10, 7, 4, 1)));
+    }
+
+    @Test
+    public void shouldReadLinesOfFile() throws Exception {
+        final File file = writeFile("first\nsecond\r\n\nlast".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(Iters.lines(file).map(TO_STRING).toList(), is(Arrays.asList("first", "second", "", "last")));
+    }
+
+    @Test
+    public void shouldNotReturnLineAfterTrailingNewLine() throws Exception {
+        final File file = writeFile("first\nsecond\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(Iters.lines(file).map(TO_STRING).toList(), is(Arrays.asList("first", "second")));
+    }
+
+    @Test
+    public void shouldReadEmptyFile() throws Exception {
+        final File file = writeFile(new byte[0]);
+
+        assertThat(Iters.lines(file).iterator().hasNext(), is(false));
+    }
+
+    @Test
+    public void shouldAccessAsciiLineCharacters() throws Exception {
+        final File file = writeFile("hello, world\n".getBytes(StandardCharsets.UTF_8));
+
+        final CharSequence line = Iters.lines(file).iterator().next();
+
+        assertThat(line.length(), is(12));
+        assertThat(line.charAt(4), is('o'));
+        assertThat(line.subSequence(7, 12).toString(), is("world"));
+    }
+
+    @Test
+    public void shouldDecodeNonAsciiLines() throws Exception {
+        final String text = "\u043f\u0440\u0438\u0432\u0456\u0442";
+        final File file = writeFile((text + "\nascii").getBytes(StandardCharsets.UTF_8));
+
+        final CharSequence line = Iters.lines(file).iterator().next();
+
+        assertThat(line.length(), is(6));
+        assertThat(line.charAt(1), is('\u0440'));
+        assertThat(line.toString(), is(text));
+    }
+
+    @Test
+    public void shouldDecodeLinesInSpecifiedCharset() throws Exception {
+        final File file = writeFile("caf\u00e9\n".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertThat(Iters.lines(file, StandardCharsets.ISO_8859_1).map(TO_STRING).toList(),
+                is(Arrays.asList("caf\u00e9")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCharsetWhichIsNotAsciiCompatible() throws Exception {
+        Iters.lines(writeFile(new byte[0]), StandardCharsets.UTF_16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectMultiByteCharsetWithAsciiLineTerminators() throws Exception {
+        Iters.lines(writeFile(new byte[0]), Charset.forName("Shift_JIS"));
+    }
+
+    @Test
+    public void shouldAcceptKnownAsciiCompatibleCharsets() throws Exception {
+        final File file = writeFile("line\n".getBytes(StandardCharsets.US_ASCII));
+        for (final String name : Arrays.asList("UTF-8", "US-ASCII", "ISO-8859-1", "ISO-8859-15", "windows-1251")) {
+            assertThat(Iters.lines(file, Charset.forName(name)).map(TO_STRING).toList(), is(Arrays.asList("line")));
+        }
+    }
+
+    @Test
+    public void shouldReadLinesAcrossSegments() throws Exception {
+        final List<String> expected = new ArrayList<String>();
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            final String line = i % 10 == 0 ? "long line number " + i : "line" + i;
+            expected.add(line);
+            text.append(line).append('\n');
+        }
+        final File file = writeFile(text.toString().getBytes(StandardCharsets.UTF_8));
+
+        final List<String> lines = Iter.of(new MappedLines(file, StandardCharsets.UTF_8, 8)).map(TO_STRING).toList();
+
+        assertThat(lines, is(expected));
+    }
+
+    @Test
+    public void shouldStopReadingLinesEarly() throws Exception {
+        final File file = writeFile("a\nb\nc\nd\n".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(Iters.lines(file).limit(2).map(TO_STRING).toList(), is(Arrays.asList("a", "b")));
+    }
+
+    @Test
+    public void shouldReadRecordsOfFile() throws Exception {
+        final File file = writeFile(records(10, ByteOrder.BIG_ENDIAN));
+
+        assertThat(Iters.records(file, 12).map(RECORD_ID).toList(), is(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9)));
+    }
+
+    @Test
+    public void shouldReadRecordsAcrossBlocks() throws Exception {
+        final File file = writeFile(records(10, ByteOrder.LITTLE_ENDIAN));
+
+        final double sum = Iter.of(new RecordSource(file, 12, ByteOrder.LITTLE_ENDIAN, 30)).reduce(0.0,
+                new Function2<Double, Double, Record>() {
+                    @Override
+                    public Double apply(final Double acc, final Record record) {
+                        return acc + record.getDouble(4);
+                    }
+                });
+
+        assertThat(sum, is(22.5));
+    }
+
+    @Test
+    public void shouldReuseRecordView() throws Exception {
+        final Iterator<Record> records = Iters.records(writeFile(records(2, ByteOrder.BIG_ENDIAN)), 12).iterator();
+
+        final Record first = records.next();
+        final Record second = records.next();
+
+        assertThat(first == second, is(true));
+        assertThat(first.getInt(0), is(1));
+        assertThat(second.size(), is(12));
+    }
+
+    @Test
+    public void shouldSkipRecords() throws Exception {
+        final File file = writeFile(records(10, ByteOrder.BIG_ENDIAN));
+
+        assertThat(Iter.of(new RecordSource(file, 12, ByteOrder.BIG_ENDIAN, 24)).skip(7).map(RECORD_ID).toList(),
+                is(Arrays.asList(7, 8, 9)));
+    }
+
+    @Test
+    public void shouldCopyRecordBytes() throws Exception {
+        final File file = writeFile(new byte[]{1, 2, 3, 4});
+
+        assertThat(Iters.records(file, 2).iterator().next().toByteArray(), is(new byte[]{1, 2}));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void shouldFailToReadValueOutsideOfRecord() throws Exception {
+        Iters.records(writeFile(records(1, ByteOrder.BIG_ENDIAN)), 12).iterator().next().getLong(8);
+    }
+
+    @Test(expected = IterIOException.class)
+    public void shouldFailOnIncompleteRecord() throws Exception {
+        Iters.records(writeFile(new byte[]{1, 2, 3}), 2).toList();
+    }
+
+    @Test
+    public void shouldReadCompleteRecordsBeforeFailingOnIncompleteOne() throws Exception {
+        final ByteBuffer content = ByteBuffer.allocate(5 * 12 + 5).put(records(5, ByteOrder.BIG_ENDIAN));
+        final Iterator<Record> records = Iter.of(new RecordSource(writeFile(content.array()), 12,
+                ByteOrder.BIG_ENDIAN, 36)).iterator();
+
+        final List<Integer> ids = new ArrayList<Integer>();
+        try {
+            while (records.hasNext()) {
+                ids.add(records.next().getInt(0));
+            }
+            fail("Should fail on incomplete record");
+        } catch (final IterIOException ignored) {
+            // expected
+        }
+        assertThat(ids, is(Arrays.asList(0, 1, 2, 3, 4)));
+        assertThat(records.hasNext(), is(false));
+    }
+
+    private static byte[] records(final int count, final ByteOrder order) {
+        final ByteBuffer buffer = ByteBuffer.allocate(count * 12).order(order);
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(i).putDouble(i / 2.0);
+        }
+        return buffer.array();
+    }
+
+    private static File writeFile(final byte[] content) throws IOException {
+        final File file = File.createTempFile("smooth-lines-", ".txt");
+        file.deleteOnExit();
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
 }
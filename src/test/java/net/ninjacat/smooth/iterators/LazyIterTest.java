@@ -171,6 +171,25 @@ public class LazyIterTest {
         verifyNoNext(tail);
     }
 
+    @Test
+    public void derivedIterableShouldReadAllElementsAfterHead() throws Exception {
+        final LazyIter<Integer> iter = LazyIter.of(Iters.range(100).toList());
+        final LazyIter<Integer> mapped = iter.map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer value) {
+                return value * 10;
+            }
+        });
+
+        assertThat(iter.head(), is(0));
+
+        final List<Integer> result = mapped.toList();
+        assertThat(result.size(), is(100));
+        assertThat(result.get(0), is(0));
+        assertThat(result.get(99), is(990));
+        assertThat(iter.tail().head(), is(1));
+    }
+
     @Test(expected = NoSuchElementException.class)
     public void tailShouldFailOnEmptyCollection() throws Exception {
         LazyIter<Integer> iter = LazyIter.of(new ArrayList<Integer>());
@@ -267,4 +286,116 @@ public class LazyIterTest {
 
         assertThat(sideEffect.hasSideEffects(), is(false));
     }
+
+    @Test
+    public void skipAndLimitShouldReturnPage() throws Exception {
+        final LazyIter<Integer> iter = LazyIter.of(1, 2, 3, 4, 5, 6);
+
+        assertThat(iter.skip(2).limit(2).toList(), is(Arrays.asList(3, 4)));
+    }
+
+    @Test
+    public void takeWhileAndDropWhileShouldSplitCollection() throws Exception {
+        final Predicate<Integer> small = new Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer integer) {
+                return integer < 3;
+            }
+        };
+
+        assertThat(LazyIter.of(1, 2, 3, 1).takeWhile(small).toList(), is(Arrays.asList(1, 2)));
+        assertThat(LazyIter.of(1, 2, 3, 1).dropWhile(small).toList(), is(Arrays.asList(3, 1)));
+    }
+
+    @Test
+    public void memoizedIterableShouldEvaluateElementsOnce() throws Exception {
+        final List<Integer> evaluated = new ArrayList<Integer>();
+        final LazyIter<Integer> memoized = LazyIter.of(1, 2, 3).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                evaluated.add(integer);
+                return integer * 10;
+            }
+        }).memoize();
+
+        assertThat(memoized.toList(), is(Arrays.asList(10, 20, 30)));
+        assertThat(memoized.reduce(0, new Function2<Integer, Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer acc, final Integer value) {
+                return acc + value;
+            }
+        }).get(), is(60));
+        assertThat(evaluated, is(Arrays.asList(1, 2, 3)));
+    }
+
+    @Test
+    public void memoizedIterableShouldReplayFromBeginning() throws Exception {
+        final LazyIter<Integer> memoized = LazyIter.of(1, 2, 3).memoize();
+
+        assertThat(memoized.head(), is(1));
+        assertThat(memoized.head(), is(1));
+        assertThat(memoized.tail().toList(), is(Arrays.asList(2, 3)));
+        assertThat(memoized.skip(1).limit(1).toList(), is(Arrays.asList(2)));
+        assertThat(memoized.toList(), is(Arrays.asList(1, 2, 3)));
+    }
+
+    @Test
+    public void memoizedIterableShouldPullElementsOnlyWhenRequested() throws Exception {
+        final List<Integer> evaluated = new ArrayList<Integer>();
+        final LazyIter<Integer> memoized = LazyIter.of(1, 2, 3).map(new Func<Integer, Integer>() {
+            @Override
+            public Integer apply(final Integer integer) {
+                evaluated.add(integer);
+                return integer;
+            }
+        }).memoize();
+
+        final Iterator<Integer> first = memoized.iterator();
+        verifyNext(first, 1);
+        final Iterator<Integer> second = memoized.iterator();
+        verifyNext(second, 1);
+        verifyNext(second, 2);
+        verifyNext(first, 2);
+        assertThat(evaluated, is(Arrays.asList(1, 2)));
+    }
+
+    @Test
+    public void boundedMemoizationShouldReplayOnlyRememberedElements() throws Exception {
+        final LazyIter<Integer> memoized = LazyIter.of(1, 2, 3, 4).memoize(2);
+
+        assertThat(memoized.limit(2).toList(), is(Arrays.asList(1, 2)));
+        assertThat(memoized.toList(), is(Arrays.asList(1, 2, 3, 4)));
+        assertThat(memoized.limit(2).toList(), is(Arrays.asList(1, 2)));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void boundedMemoizationShouldFailToReplayForgottenElements() throws Exception {
+        final LazyIter<Integer> memoized = LazyIter.of(1, 2, 3, 4).memoize(2);
+
+        memoized.toList();
+        memoized.toList();
+    }
+
+    @Test
+    public void headAndTailShouldReturnSameResultsOnEveryCall() throws Exception {
+        final LazyIter<Integer> iter = LazyIter.of(1, 2, 3);
+
+        assertThat(iter.head(), is(1));
+        assertThat(iter.tail().head(), is(2));
+        assertThat(iter.head(), is(1));
+        assertThat(iter.tail().toList(), is(Arrays.asList(2, 3)));
+        assertThat(iter.toList(), is(Arrays.asList(1, 2, 3)));
+    }
+
+    @Test
+    public void flatMapShouldExpandElements() throws Exception {
+        final LazyIter<Integer> iter = LazyIter.of(1, 2).flatMap(new Func<List<Integer>, Integer>() {
+            @Override
+            public List<Integer> apply(final Integer integer) {
+                return Arrays.asList(integer, -integer);
+            }
+        });
+
+        assertThat(iter.toList(), is(Arrays.asList(1, -1, 2, -2)));
+    }
 }
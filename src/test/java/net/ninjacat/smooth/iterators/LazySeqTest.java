@@ -0,0 +1,90 @@
+package net.ninjacat.smooth.iterators;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static net.ninjacat.smooth.iterators.IterFixtures.verifyNext;
+import static net.ninjacat.smooth.iterators.IterFixtures.verifyNoNext;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LazySeqTest {
+
+    @Test
+    public void headAndTailShouldNotChangeSequence() throws Exception {
+        final LazySeq<Integer> seq = LazySeq.of(Arrays.asList(1, 2, 3));
+
+        assertThat(seq.head(), is(1));
+        assertThat(seq.tail().head(), is(2));
+        assertThat(seq.head(), is(1));
+        assertThat(seq.tail().head(), is(2));
+        assertThat(seq.tail().tail().tail().isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldReadElementsInChunks() throws Exception {
+        final Iterator<Integer> source = Iters.range(100).iterator();
+        final LazySeq<Integer> seq = LazySeq.of(source);
+
+        assertThat(seq.tail().head(), is(1));
+        verifyNext(source, LazySeq.CHUNK_SIZE);
+    }
+
+    @Test
+    public void shouldNotReadElementsUntilRequested() throws Exception {
+        final Iterator<Integer> source = Iters.range(100).iterator();
+        LazySeq<Integer> seq = LazySeq.of(source);
+        for (int i = 0; i < LazySeq.CHUNK_SIZE; i++) {
+            seq = seq.tail();
+        }
+
+        verifyNext(source, LazySeq.CHUNK_SIZE);
+    }
+
+    @Test
+    public void recursiveProcessingShouldCrossChunks() throws Exception {
+        assertThat(sum(LazySeq.of(Iters.range(1, 101))), is(5050));
+        assertThat(sum(LazySeq.of(Iters.range(LazySeq.CHUNK_SIZE * 2))), is(LazySeq.CHUNK_SIZE * (LazySeq.CHUNK_SIZE * 2 - 1)));
+    }
+
+    @Test
+    public void iteratorsShouldReadSharedElements() throws Exception {
+        final LazySeq<Integer> seq = LazySeq.of(Iters.range(70));
+        final List<Integer> expected = Iters.range(70).toList();
+
+        assertThat(seq.iter().toList(), is(expected));
+        assertThat(seq.tail().iter().toList(), is(expected.subList(1, 70)));
+
+        final Iterator<Integer> iterator = seq.tail().tail().iterator();
+        verifyNext(iterator, 2);
+        verifyNext(iterator, 3);
+    }
+
+    @Test
+    public void emptySequenceShouldHaveNoElements() throws Exception {
+        final LazySeq<Integer> seq = LazySeq.of(Collections.<Integer>emptyList());
+
+        assertThat(seq.isEmpty(), is(true));
+        verifyNoNext(seq.iterator());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void tailShouldFailOnEmptySequence() throws Exception {
+        LazySeq.of(Collections.<Integer>emptyList()).tail();
+    }
+
+    private static int sum(final LazySeq<Integer> seq) {
+        int result = 0;
+        LazySeq<Integer> current = seq;
+        while (!current.isEmpty()) {
+            result += current.head();
+            current = current.tail();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,48 @@
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.LongFunc;
+import net.ninjacat.smooth.functions.LongPredicate;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LongIterTest {
+
+    @Test
+    public void shouldSumLargeRange() throws Exception {
+        final long sum = LongIter.range(0, 1000000).sum();
+
+        assertThat(sum, is(999999L * 1000000L / 2));
+    }
+
+    @Test
+    public void mapAndFilterShouldBeAppliedInOrder() throws Exception {
+        final long[] result = LongIter.of(1L, 2L, 3L).map(new LongFunc() {
+            @Override
+            public long apply(final long value) {
+                return value * 10000000000L;
+            }
+        }).filter(new LongPredicate() {
+            @Override
+            public boolean matches(final long value) {
+                return value > 10000000000L;
+            }
+        }).toArray();
+
+        assertThat(result, is(new long[]{20000000000L, 30000000000L}));
+    }
+
+    @Test
+    public void shouldFindExtremes() throws Exception {
+        assertThat(LongIter.of(3L, Long.MIN_VALUE, 7L).min(), is(Long.MIN_VALUE));
+        assertThat(LongIter.of(3L, Long.MIN_VALUE, 7L).max(), is(7L));
+    }
+
+    @Test
+    public void boxedShouldReturnAllValues() throws Exception {
+        assertThat(LongIter.range(1, 4).boxed().toList(), is(Arrays.asList(1L, 2L, 3L)));
+    }
+}
@@ -0,0 +1,58 @@
+package net.ninjacat.smooth.iterators;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LongRangeTest {
+
+    @Test
+    public void shouldHandleValuesOutsideOfIntegerRange() throws Exception {
+        final LongRange range = LongRange.of(10000000000L, 10000000010L, 5);
+
+        assertThat(range.count(), is(2L));
+        assertThat(range.iter().toList(), is(Arrays.asList(10000000000L, 10000000005L)));
+        assertThat(range.contains(10000000005L), is(true));
+    }
+
+    @Test
+    public void shouldSkipWithoutIterating() throws Exception {
+        final LongRange range = LongRange.of(0, Long.MAX_VALUE).skip(Long.MAX_VALUE - 2);
+
+        assertThat(range.longs().toArray(), is(new long[]{Long.MAX_VALUE - 2, Long.MAX_VALUE - 1}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectRangeLargerThanLong() throws Exception {
+        LongRange.of(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void shouldCreateRangeWiderThanLongWithLargeStep() throws Exception {
+        final LongRange range = LongRange.of(Long.MIN_VALUE, Long.MAX_VALUE, 4);
+
+        assertThat(range.count(), is(1L << 62));
+        assertThat(range.get(range.count() - 1), is(Long.MAX_VALUE - 3));
+        assertThat(range.contains(Long.MAX_VALUE - 3), is(true));
+        assertThat(range.contains(Long.MAX_VALUE - 1), is(false));
+    }
+
+    @Test
+    public void shouldCheckStepOfValuesFarFromStart() throws Exception {
+        final LongRange range = LongRange.of(Long.MIN_VALUE, Long.MAX_VALUE, 3);
+
+        assertThat(range.contains(Long.MIN_VALUE + 3 * 4000000000000000000L), is(true));
+        assertThat(range.contains(Long.MIN_VALUE + 3 * 4000000000000000000L + 1), is(false));
+    }
+
+    @Test
+    public void shouldCreateDescendingRangeWithMinimalStep() throws Exception {
+        final LongRange range = LongRange.of(Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE);
+
+        assertThat(range.count(), is(2L));
+        assertThat(range.get(1), is(-1L));
+    }
+}
@@ -19,16 +19,45 @@ package net.ninjacat.smooth.iterators;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static net.ninjacat.smooth.iterators.IterFixtures.verifyNext;
 import static net.ninjacat.smooth.iterators.IterFixtures.verifyNoNext;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
 
 /**
  * User: raven
  * Date: 06/09/13
  */
 public class MultiIterableTest {
+    private static final Iterable<Integer> ENDLESS = new Iterable<Integer>() {
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                @Override
+                public boolean hasNext() {
+                    return true;
+                }
+
+                @Override
+                public Integer next() {
+                    return 1;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    };
 
     @Test
     public void shouldWalkSimpleCollection() throws Exception {
@@ -55,4 +84,145 @@ public class MultiIterableTest {
         verifyNoNext(iter);
     }
 
+    @Test
+    public void shouldMergeSortedCollections() throws Exception {
+        final MultiIterable<Integer> mi = MultiIterable.sorted(NATURAL,
+                Arrays.asList(1, 4, 7), Arrays.asList(2, 5, 8), Arrays.asList(3, 6, 9));
+
+        assertThat(Iter.of(mi.iterator()).toList(), is(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9)));
+    }
+
+    @Test
+    public void shouldMergeAppendedAndEmptyCollections() throws Exception {
+        final MultiIterable<Integer> mi = MultiIterable.sorted(NATURAL);
+        mi.append(Arrays.asList(5, 10));
+        mi.append(Collections.<Integer>emptyList());
+        mi.append(Arrays.asList(1, 2, 3, 20));
+
+        assertThat(Iter.of(mi.iterator()).toList(), is(Arrays.asList(1, 2, 3, 5, 10, 20)));
+    }
+
+    @Test
+    public void shouldKeepOrderOfEqualElementsWhenMerging() throws Exception {
+        final Comparator<String> byLength = new Comparator<String>() {
+            @Override
+            public int compare(final String left, final String right) {
+                return left.length() - right.length();
+            }
+        };
+        final List<String> first = Arrays.asList("a", "bb", "ccc");
+        final List<String> second = Arrays.asList("d", "ee", "fff");
+
+        final Iterator<String> iter = MultiIterable.sorted(byLength, first, second).iterator();
+
+        verifyNext(iter, "a");
+        verifyNext(iter, "d");
+        verifyNext(iter, "bb");
+        verifyNext(iter, "ee");
+        verifyNext(iter, "ccc");
+        verifyNext(iter, "fff");
+        verifyNoNext(iter);
+    }
+
+    @Test
+    public void shouldMergeNothing() throws Exception {
+        verifyNoNext(MultiIterable.sorted(NATURAL).iterator());
+    }
+
+    @Test
+    public void shouldReadAllCollectionsConcurrently() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            final List<Integer> first = Iters.range(0, 1000).toList();
+            final List<Integer> second = Iters.range(1000, 2000).toList();
+            final List<Integer> third = Iters.range(2000, 3000).toList();
+
+            final List<Integer> result = Iter.of(MultiIterable.concurrent(executor, 16, first, second, third)
+                    .iterator()).toList();
+
+            assertThat(Iter.of(result).sorted(NATURAL).toList(), is(Iters.range(3000).toList()));
+            assertThat(Iter.of(result).filter(below(1000)).toList(), is(first));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldReadNoCollectionsConcurrently() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            verifyNoNext(MultiIterable.<Integer>concurrent(executor, 4).iterator());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldRethrowFailureOfConcurrentCollection() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        final Iterable<Integer> failing = new Iterable<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                throw new IllegalStateException("boom");
+            }
+        };
+        try {
+            Iter.of(MultiIterable.concurrent(executor, 4, Iters.range(100), failing).iterator()).toList();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldCancelConcurrentReadingWhenStoppedEarly() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final List<Integer> result = Iter.of(MultiIterable.concurrent(executor, 4, ENDLESS, ENDLESS).iterator())
+                    .limit(10).toList();
+
+            executor.shutdown();
+
+            assertThat(result.size(), is(10));
+            assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldStopConcurrentReadingWhenIteratorIsAbandoned() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Iterator<Integer> iterator = MultiIterable.concurrent(executor, 4, ENDLESS, ENDLESS).iterator();
+            verifyNext(iterator, 1);
+            iterator = null;
+            executor.shutdown();
+
+            boolean stopped = false;
+            for (int i = 0; i < 50 && !stopped; i++) {
+                System.gc();
+                stopped = executor.awaitTermination(100, TimeUnit.MILLISECONDS);
+            }
+
+            assertThat(stopped, is(true));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static net.ninjacat.smooth.functions.Predicate<Integer> below(final int bound) {
+        return new net.ninjacat.smooth.functions.Predicate<Integer>() {
+            @Override
+            public boolean matches(final Integer value) {
+                return value < bound;
+            }
+        };
+    }
+
+    private static final Comparator<Integer> NATURAL = new Comparator<Integer>() {
+        @Override
+        public int compare(final Integer left, final Integer right) {
+            return left.compareTo(right);
+        }
+    };
 }
@@ -0,0 +1,113 @@
+package net.ninjacat.smooth.iterators;
+
+import net.ninjacat.smooth.functions.Func;
+import net.ninjacat.smooth.functions.Function2;
+import net.ninjacat.smooth.functions.Predicate;
+import net.ninjacat.smooth.functions.Procedure;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ParallelIterTest {
+
+    private static final int SIZE = 100000;
+
+    private static final Function2<Long, Long, Integer> SUM = new Function2<Long, Long, Integer>() {
+        @Override
+        public Long apply(final Long acc, final Integer value) {
+            return acc + value;
+        }
+    };
+
+    private static final Function2<Long, Long, Long> COMBINE_SUM = new Function2<Long, Long, Long>() {
+        @Override
+        public Long apply(final Long left, final Long right) {
+            return left + right;
+        }
+    };
+
+    private static final Func<Integer, Integer> DOUBLE = new Func<Integer, Integer>() {
+        @Override
+        public Integer apply(final Integer integer) {
+            return integer * 2;
+        }
+    };
+
+    private static final Predicate<Integer> EVEN = new Predicate<Integer>() {
+        @Override
+        public boolean matches(final Integer integer) {
+            return 0 == integer % 2;
+        }
+    };
+
+    @Test
+    public void reduceShouldCombinePartialResults() throws Exception {
+        final long result = Iters.range(SIZE).parallel(new ForkJoinPool(4)).reduce(0L, SUM, COMBINE_SUM);
+
+        assertThat(result, is((long) SIZE * (SIZE - 1) / 2));
+    }
+
+    @Test
+    public void orderedToListShouldPreserveOrder() throws Exception {
+        final List<Integer> result = Iter.of(sequence(SIZE)).parallel().map(DOUBLE).filter(EVEN).toList();
+
+        final List<Integer> expected = Iter.of(sequence(SIZE)).map(DOUBLE).toList();
+        assertThat(result, is(expected));
+    }
+
+    @Test
+    public void unorderedToListShouldContainAllElements() throws Exception {
+        final ParallelIter<Integer> parallel = Iters.range(SIZE).parallel().filter(EVEN).unordered();
+        final List<Integer> result = new ArrayList<Integer>(parallel.toList());
+        Collections.sort(result);
+
+        assertThat(parallel.isOrdered(), is(false));
+        assertThat(result, is(Iters.range(SIZE).filter(EVEN).toList()));
+    }
+
+    @Test
+    public void toSetShouldMergeParts() throws Exception {
+        final Integer[] data = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            data[i] = i % 100;
+        }
+
+        assertThat(Iter.fromArray(data).parallel().toSet(), is(Iters.range(100).toSet()));
+    }
+
+    @Test
+    public void forEachShouldVisitAllElements() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+
+        Iters.range(SIZE).parallel().forEach(new Procedure<Integer>() {
+            @Override
+            public void call(final Integer integer) {
+                counter.incrementAndGet();
+            }
+        });
+
+        assertThat(counter.get(), is(SIZE));
+    }
+
+    @Test
+    public void shouldProcessSourceWhichCannotBeSplit() throws Exception {
+        final long result = Iter.of(sequence(SIZE).iterator()).parallel().reduce(0L, SUM, COMBINE_SUM);
+
+        assertThat(result, is((long) SIZE * (SIZE - 1) / 2));
+    }
+
+    private static List<Integer> sequence(final int size) {
+        final List<Integer> list = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+}